@@ -0,0 +1,70 @@
+package com.example.chess.app.config;
+
+import io.r2dbc.spi.ConnectionFactories;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bit_count(bigint) implementations in Postgres: the native wrapper installed on
+ * 14+, the SWAR fallback for older servers, and the text-based count they replaced.
+ * Each invocation sums the popcount of 100k random bitboards, about what a similarity
+ * query computes for one material bucket. Starts a Postgres container; needs Docker.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BitCountBenchmark {
+
+    private static final String TEXT_BIT_COUNT = """
+        CREATE OR REPLACE FUNCTION text_bit_count(val bigint)
+        RETURNS int AS $$
+            SELECT length(replace((val::bit(64))::text, '0', ''))::int;
+        $$ LANGUAGE SQL IMMUTABLE STRICT;
+    """;
+
+    @Param({"native", "swar", "text"})
+    private String implementation;
+
+    private PostgreSQLContainer<?> postgres;
+    private DatabaseClient databaseClient;
+    private String sql;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+        databaseClient = DatabaseClient.create(ConnectionFactories.get(String.format("r2dbc:postgresql://%s:%s@%s:%d/%s",
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName())));
+
+        databaseClient.sql(DatabaseInitializer.bitCountFunction("native_bit_count", true)).then()
+                .then(databaseClient.sql(DatabaseInitializer.bitCountFunction("swar_bit_count", false)).then())
+                .then(databaseClient.sql(TEXT_BIT_COUNT).then())
+                .then(databaseClient.sql("""
+                        SELECT setseed(0.42);
+                        CREATE TABLE bitboards AS
+                        SELECT (random() * 9.2e18)::bigint * (CASE WHEN random() < 0.5 THEN -1 ELSE 1 END) AS v
+                        FROM generate_series(1, 100000);
+                        ANALYZE bitboards;
+                        """).then())
+                .block();
+
+        sql = "SELECT sum(" + implementation + "_bit_count(v)) AS bits FROM bitboards";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        postgres.stop();
+    }
+
+    @Benchmark
+    public Long sumBitCounts() {
+        return databaseClient.sql(sql)
+                .map(row -> row.get("bits", Long.class))
+                .one()
+                .block();
+    }
+}
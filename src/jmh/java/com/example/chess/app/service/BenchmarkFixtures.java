@@ -0,0 +1,103 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.GameDTO;
+import com.example.chess.app.dto.GameMetadataDTO;
+import com.example.chess.app.dto.PositionDTO;
+import com.example.chess.app.dto.enums.Color;
+import com.example.chess.app.dto.enums.PieceType;
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.model.Board;
+import com.example.chess.app.util.FenParser;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Shared inputs for the benchmarks: a few positions from a Ruy Lopez and a game
+ * message of typical length built from them.
+ */
+final class BenchmarkFixtures {
+
+    static final List<String> FENS = List.of(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+            "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 0 4",
+            "r1bqkb1r/1ppp1ppp/p1n2n2/4p3/B3P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 2 5",
+            "r1bqk2r/2ppbppp/p1n2n2/1p2p3/4P3/1B3N2/PPPP1PPP/RNBQR1K1 b kq - 1 7",
+            "r1bq1rk1/2p1bppp/p1np1n2/1p2p3/4P3/1BP2N1P/PP1P1PP1/RNBQR1K1 b - - 0 9",
+            "r2q1rk1/2pbbppp/p1np1n2/1p2p3/3PP3/1BP2N1P/PP3PP1/RNBQR1K1 w - - 1 10");
+
+    // Typical number of stored positions per game
+    static final int POSITIONS_PER_GAME = 80;
+
+    private BenchmarkFixtures() {
+    }
+
+    static SimilarityRequest request(PieceType... pieces) {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(Color.WHITE);
+        request.setSelectedPieces(EnumSet.of(pieces[0], pieces));
+        request.setLimit(20);
+        request.toDomain();
+        return request;
+    }
+
+    static GameDTO game() {
+        GameMetadataDTO metadata = new GameMetadataDTO();
+        metadata.setGameId("benchmark-game");
+        metadata.setResult("1-0");
+        metadata.setWhiteElo(2210);
+        metadata.setBlackElo(2185);
+        metadata.setGameType("blitz");
+        metadata.setEco("C84");
+        metadata.setOpening("Ruy Lopez");
+
+        List<PositionDTO> positions = new ArrayList<>(POSITIONS_PER_GAME);
+        for (int i = 0; i < POSITIONS_PER_GAME; i++) {
+            positions.add(positionDto(FENS.get(i % FENS.size()), i + 1));
+        }
+
+        GameDTO game = new GameDTO();
+        game.setGameMetadata(metadata);
+        game.setPositions(positions);
+        return game;
+    }
+
+    private static PositionDTO positionDto(String fen, int moveNumber) {
+        Board board = FenParser.parse(fen);
+
+        PositionDTO dto = new PositionDTO();
+        dto.setMoveNumber(moveNumber);
+        dto.setFen(fen);
+        dto.setSideToMove(board.isWhiteToMove() ? "w" : "b");
+        dto.setCastlingRights(board.getCastlingRights());
+        dto.setEnPassantSquare(board.getEnPassantSquare() == Board.NO_SQUARE ? 0 : board.getEnPassantSquare());
+        dto.setHalfmoveClock(board.getHalfMoveClock());
+        dto.setFullmoveNumber(board.getFullMoveNumber());
+
+        dto.setWhitePawns(board.pieces(Board.WHITE_PAWN));
+        dto.setWhiteKnights(squares(board.pieces(Board.WHITE_KNIGHT)));
+        dto.setWhiteBishops(squares(board.pieces(Board.WHITE_BISHOP)));
+        dto.setWhiteRooks(squares(board.pieces(Board.WHITE_ROOK)));
+        dto.setWhiteQueens(squares(board.pieces(Board.WHITE_QUEEN)));
+        dto.setWhiteKing(Long.numberOfTrailingZeros(board.pieces(Board.WHITE_KING)));
+        dto.setBlackPawns(board.pieces(Board.BLACK_PAWN));
+        dto.setBlackKnights(squares(board.pieces(Board.BLACK_KNIGHT)));
+        dto.setBlackBishops(squares(board.pieces(Board.BLACK_BISHOP)));
+        dto.setBlackRooks(squares(board.pieces(Board.BLACK_ROOK)));
+        dto.setBlackQueens(squares(board.pieces(Board.BLACK_QUEEN)));
+        dto.setBlackKing(Long.numberOfTrailingZeros(board.pieces(Board.BLACK_KING)));
+        return dto;
+    }
+
+    private static List<Integer> squares(long bitboard) {
+        List<Integer> squares = new ArrayList<>();
+        while (bitboard != 0) {
+            squares.add(Long.numberOfTrailingZeros(bitboard));
+            bitboard &= bitboard - 1;
+        }
+        return squares;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.model.Board;
+import com.example.chess.app.model.Position;
+import com.example.chess.app.util.FenParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FEN parsing: the raw parser into a reused Board (expected to allocate nothing, check
+ * gc.alloc.rate.norm) and the full PositionService conversion used by the resolver.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class FenParsingBenchmark {
+
+    @Param({"0", "3", "7"})
+    private int fenIndex;
+
+    private String fen;
+    private final Board board = new Board();
+    private final PositionService positionService = new PositionService(new SearchMetrics(new SimpleMeterRegistry()));
+
+    @Setup
+    public void setup() {
+        fen = BenchmarkFixtures.FENS.get(fenIndex);
+    }
+
+    @Benchmark
+    public void parseIntoReusedBoard(Blackhole blackhole) {
+        FenParser.parse(fen, board);
+        blackhole.consume(board);
+    }
+
+    @Benchmark
+    public Position convertFenToPosition() {
+        return positionService.convertFenToPosition(fen).block();
+    }
+}
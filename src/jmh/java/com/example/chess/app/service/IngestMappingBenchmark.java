@@ -0,0 +1,46 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.GameDTO;
+import com.example.chess.app.model.Position;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message ingest cost without the database: deserializing a Kafka message into
+ * a GameDTO and mapping its positions to entities.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class IngestMappingBenchmark {
+
+    private ObjectMapper objectMapper;
+    private GameMessageMapper gameMapper;
+    private GameDTO game;
+    private String message;
+
+    @Setup
+    public void setup() throws Exception {
+        // Configured like the application's ObjectMapper bean
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        gameMapper = new GameMessageMapper();
+        game = BenchmarkFixtures.game();
+        message = objectMapper.writeValueAsString(game);
+    }
+
+    @Benchmark
+    public GameDTO deserializeGame() throws Exception {
+        return objectMapper.readValue(message, GameDTO.class);
+    }
+
+    @Benchmark
+    public List<Position> mapToPositions() {
+        return gameMapper.mapToPositions(game.getPositions(), game.getGameMetadata());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.enums.PieceType;
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.model.Board;
+import com.example.chess.app.model.Position;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the similarity SQL for a request, from scratch and through the per-shape
+ * cache. No database is involved; the service is created without a template.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class SimilaritySqlBenchmark {
+
+    @Param({"PAWNS", "MINOR_PIECES", "ALL"})
+    private String selection;
+
+    private PositionMatchingService matchingService;
+    private Board board;
+    private SimilarityRequest request;
+    private int pieces;
+    private List<String> filters;
+    private List<String> scores;
+
+    @Setup
+    public void setup() {
+        SearchMetrics searchMetrics = new SearchMetrics(new SimpleMeterRegistry());
+        matchingService = new PositionMatchingService(null, new InMemorySimilarityEngine(null, searchMetrics, "sql"), searchMetrics,
+                null, null, null, 1, false);
+        Position position = new PositionService(searchMetrics).convertFenToPosition(BenchmarkFixtures.FENS.get(6)).block();
+        board = Board.from(position);
+        request = switch (selection) {
+            case "PAWNS" -> BenchmarkFixtures.request(PieceType.PAWN);
+            case "MINOR_PIECES" -> BenchmarkFixtures.request(PieceType.KNIGHT, PieceType.BISHOP);
+            default -> BenchmarkFixtures.request(PieceType.values());
+        };
+        pieces = matchingService.activePieces(board, request);
+        filters = matchingService.buildPrefilterConditions(pieces);
+        scores = matchingService.buildSimilarityScoreClauses(pieces);
+    }
+
+    @Benchmark
+    public int activePieces() {
+        return matchingService.activePieces(board, request);
+    }
+
+    @Benchmark
+    public List<String> buildPrefilterConditions() {
+        return matchingService.buildPrefilterConditions(pieces);
+    }
+
+    @Benchmark
+    public List<String> buildSimilarityScoreClauses() {
+        return matchingService.buildSimilarityScoreClauses(pieces);
+    }
+
+    @Benchmark
+    public String assembleSimilaritySQL() {
+        return matchingService.assembleSimilaritySQL("positions", filters, scores);
+    }
+
+    @Benchmark
+    public String buildFullQuery() {
+        int active = matchingService.activePieces(board, request);
+        return matchingService.assembleSimilaritySQL("positions",
+                matchingService.buildPrefilterConditions(active),
+                matchingService.buildSimilarityScoreClauses(active));
+    }
+
+    @Benchmark
+    public String cachedQuery() {
+        return matchingService.similaritySql(matchingService.activePieces(board, request));
+    }
+}
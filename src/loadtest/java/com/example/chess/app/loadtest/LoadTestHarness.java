@@ -0,0 +1,341 @@
+package com.example.chess.app.loadtest;
+
+import com.example.chess.app.ChessPositionSearchApplication;
+import com.example.chess.app.dto.GameDTO;
+import com.example.chess.app.service.InMemorySimilarityEngine;
+import com.example.chess.app.service.KafkaListenerService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.graphql.ExecutionGraphQlService;
+import org.springframework.graphql.support.DefaultExecutionGraphQlRequest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test: generates a synthetic corpus, writes it through the same
+ * ingest path as the Kafka consumer into Postgres (a throwaway container unless
+ * {@code loadtest.r2dbc-url} is set), then replays a mixed
+ * {@code findSimilarPositionsByFen} workload through the GraphQL engine at a fixed
+ * concurrency and reports latency percentiles, throughput and pool saturation.
+ * See {@link LoadTestSettings} for the knobs.
+ */
+@Slf4j
+public final class LoadTestHarness {
+
+    private static final String QUERY = """
+            query Similar($fen: String!, $request: SimilarityRequestInput!) {
+              findSimilarPositionsByFen(fen: $fen, request: $request) {
+                similarityScore
+                position { id moveNumber }
+                game { id whiteElo blackElo result }
+              }
+            }
+            """;
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) {
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+
+        PostgreSQLContainer<?> postgres = null;
+        String r2dbcUrl = settings.r2dbcUrl();
+        if (r2dbcUrl == null) {
+            postgres = new PostgreSQLContainer<>(DockerImageName.parse(settings.postgresImage())
+                    .asCompatibleSubstituteFor("postgres"))
+                    // Planning statistics, reported after the workload
+                    .withCommand("postgres", "-c", "shared_preload_libraries=pg_stat_statements",
+                            "-c", "pg_stat_statements.track_planning=on");
+            postgres.start();
+            r2dbcUrl = String.format("r2dbc:postgresql://%s:%s@%s:%d/%s",
+                    postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                    postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName());
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChessPositionSearchApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.r2dbc.url=" + r2dbcUrl,
+                        "chess.ingest.kafka.enabled=false",
+                        "chess.similarity.engine=" + settings.engine(),
+                        "chess.cache.similarity.maximum-size=" + (settings.cache() ? 10_000 : 0),
+                        "logging.level.com.example.chess.app.service.KafkaListenerService=WARN")
+                .run(args)) {
+
+            if (!settings.skipIngest()) {
+                ingestCorpus(context, settings);
+            }
+            awaitEngine(context.getBean(InMemorySimilarityEngine.class), settings);
+            runWorkload(context, settings);
+        } finally {
+            if (postgres != null) {
+                postgres.stop();
+            }
+        }
+    }
+
+    /**
+     * Generate games until the corpus reaches the configured size and write them as
+     * JSON messages through {@link KafkaListenerService#ingest(List)}.
+     */
+    private static void ingestCorpus(ConfigurableApplicationContext context, LoadTestSettings settings) {
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        KafkaListenerService listenerService = context.getBean(KafkaListenerService.class);
+        SyntheticGameGenerator generator = new SyntheticGameGenerator(settings.seed(),
+                settings.corpusElo().min(), settings.corpusElo().max(), settings.maxPlies());
+
+        log.info("Generating and ingesting {} positions...", settings.positions());
+        AtomicLong generatedPositions = new AtomicLong();
+        AtomicLong writtenGames = new AtomicLong();
+        long reportEvery = Math.max(1, settings.positions() / 20);
+        // Fresh game ids per run, so ingesting into an existing database adds to the corpus
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        long start = System.nanoTime();
+
+        Flux.<GameDTO, Long>generate(() -> 0L, (index, sink) -> {
+                    if (generatedPositions.get() >= settings.positions()) {
+                        sink.complete();
+                        return index;
+                    }
+                    GameDTO game = generator.nextGame("synthetic-" + runId + "-" + index);
+                    long before = generatedPositions.getAndAdd(game.getPositions().size());
+                    if (before / reportEvery != (before + game.getPositions().size()) / reportEvery) {
+                        log.info("Generated {} positions", before + game.getPositions().size());
+                    }
+                    sink.next(game);
+                    return index + 1;
+                })
+                .map(game -> toJson(objectMapper, game))
+                .buffer(settings.ingestBatch())
+                .flatMap(batch -> listenerService.ingest(batch)
+                        .doOnSuccess(v -> writtenGames.addAndGet(batch.size())), settings.ingestParallel())
+                .blockLast();
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        log.info("Ingested {} games / {} positions in {} s ({} positions/sec)",
+                writtenGames.get(), generatedPositions.get(), Math.round(seconds),
+                Math.round(generatedPositions.get() / seconds));
+    }
+
+    private static String toJson(ObjectMapper objectMapper, GameDTO game) {
+        try {
+            return objectMapper.writeValueAsString(game);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize synthetic game", e);
+        }
+    }
+
+    private static void awaitEngine(InMemorySimilarityEngine engine, LoadTestSettings settings) {
+        if (!"memory".equalsIgnoreCase(settings.engine())) {
+            return;
+        }
+        log.info("Waiting for the in-memory similarity engine to load...");
+        while (!engine.isReady()) {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the similarity engine", e);
+            }
+        }
+    }
+
+    private static void runWorkload(ConfigurableApplicationContext context, LoadTestSettings settings) {
+        DatabaseClient databaseClient = context.getBean(DatabaseClient.class);
+        ExecutionGraphQlService graphQlService = context.getBean(ExecutionGraphQlService.class);
+
+        Long corpusSize = databaseClient.sql("SELECT count(*) AS total FROM positions")
+                .map(row -> row.get("total", Long.class))
+                .one()
+                .block();
+        // Skip the start position, which every game shares
+        List<String> fens = databaseClient.sql("SELECT fen FROM positions WHERE move_number > 0 ORDER BY random() LIMIT :limit")
+                .bind("limit", settings.sampleFens())
+                .map(row -> row.get("fen", String.class))
+                .all()
+                .collectList()
+                .block();
+        if (fens == null || fens.isEmpty()) {
+            throw new IllegalStateException("No positions to query; ingest a corpus first");
+        }
+
+        List<Query> workload = buildWorkload(settings, fens);
+        List<Query> warmup = workload.subList(0, settings.warmup());
+        List<Query> measured = workload.subList(settings.warmup(), workload.size());
+
+        log.info("Warming up with {} queries...", warmup.size());
+        execute(graphQlService, warmup, settings.concurrency(), new long[warmup.size()]);
+
+        boolean planStats = resetPlanStatistics(databaseClient);
+        PoolSaturation saturation = new PoolSaturation();
+        ConnectionFactory connectionFactory = context.getBean(ConnectionFactory.class);
+        Disposable sampler = connectionFactory instanceof ConnectionPool pool
+                ? Flux.interval(Duration.ofMillis(50))
+                        .subscribe(tick -> pool.getMetrics().ifPresent(saturation::sample))
+                : null;
+
+        log.info("Running {} queries at concurrency {} against {} positions...",
+                measured.size(), settings.concurrency(), corpusSize);
+        long[] latencies = new long[measured.size()];
+        long start = System.nanoTime();
+        int errors = execute(graphQlService, measured, settings.concurrency(), latencies);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        if (sampler != null) {
+            sampler.dispose();
+        }
+
+        log.info("==== Load test: {} positions, engine={}, cache={} ====", corpusSize, settings.engine(), settings.cache());
+        log.info("Throughput: {} queries in {} s = {} queries/sec, {} errors",
+                measured.size(), String.format("%.1f", seconds), String.format("%.1f", measured.size() / seconds), errors);
+        log.info("Latency (all): {}", percentiles(latencies));
+
+        Map<String, List<Long>> byMix = new TreeMap<>();
+        for (int i = 0; i < measured.size(); i++) {
+            byMix.computeIfAbsent(measured.get(i).label(), label -> new ArrayList<>()).add(latencies[i]);
+        }
+        byMix.forEach((label, values) ->
+                log.info("Latency ({}, n={}): {}", label, values.size(),
+                        percentiles(values.stream().mapToLong(Long::longValue).toArray())));
+        log.info("Connection pool: {}", saturation);
+        if (planStats) {
+            log.info("Similarity statements: {}", planStatistics(databaseClient));
+        }
+    }
+
+    /**
+     * Enable and reset pg_stat_statements if the server has it preloaded (always true
+     * for the container). Returns false when planning statistics are unavailable.
+     */
+    private static boolean resetPlanStatistics(DatabaseClient databaseClient) {
+        return databaseClient.sql("CREATE EXTENSION IF NOT EXISTS pg_stat_statements")
+                .then()
+                .then(databaseClient.sql("SELECT pg_stat_statements_reset()").then())
+                .thenReturn(true)
+                .onErrorResume(e -> {
+                    log.warn("pg_stat_statements unavailable, skipping plan statistics: {}", e.getMessage());
+                    return Mono.just(false);
+                })
+                .block();
+    }
+
+    /**
+     * Distinct statement texts, executions, plans and planning time of the similarity
+     * queries. Fewer plans than calls means the server reused cached plans.
+     */
+    private static String planStatistics(DatabaseClient databaseClient) {
+        return databaseClient.sql("""
+                        SELECT count(*) AS statements,
+                               coalesce(sum(calls), 0) AS calls,
+                               coalesce(sum(plans), 0) AS plans,
+                               coalesce(sum(total_plan_time), 0) AS plan_ms,
+                               coalesce(sum(total_exec_time), 0) AS exec_ms
+                        FROM pg_stat_statements
+                        WHERE query LIKE '%best_per_game%'
+                        """)
+                .map(row -> {
+                    long calls = row.get("calls", Number.class).longValue();
+                    long plans = row.get("plans", Number.class).longValue();
+                    double planMs = row.get("plan_ms", Number.class).doubleValue();
+                    double execMs = row.get("exec_ms", Number.class).doubleValue();
+                    return String.format("%d distinct, %d calls, %d plans, mean plan %.3f ms, mean exec %.3f ms, planning %.1f%% of server time",
+                            row.get("statements", Number.class).longValue(), calls, plans,
+                            plans == 0 ? 0.0 : planMs / plans, calls == 0 ? 0.0 : execMs / calls,
+                            planMs + execMs == 0 ? 0.0 : 100.0 * planMs / (planMs + execMs));
+                })
+                .one()
+                .block();
+    }
+
+    /**
+     * Pre-draw every query so that the measured loop only executes them. Piece
+     * selections are drawn by weight, Elo ranges and colors uniformly.
+     */
+    private static List<Query> buildWorkload(LoadTestSettings settings, List<String> fens) {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        int totalWeight = settings.pieceMix().stream().mapToInt(LoadTestSettings.PieceMix::weight).sum();
+
+        List<Query> workload = new ArrayList<>(settings.warmup() + settings.queries());
+        for (int i = 0; i < settings.warmup() + settings.queries(); i++) {
+            int pick = random.nextInt(totalWeight);
+            LoadTestSettings.PieceMix mix = null;
+            for (LoadTestSettings.PieceMix candidate : settings.pieceMix()) {
+                mix = candidate;
+                pick -= candidate.weight();
+                if (pick < 0) {
+                    break;
+                }
+            }
+            LoadTestSettings.EloRange elo = settings.queryElo().get(random.nextInt(settings.queryElo().size()));
+
+            Map<String, Object> request = new HashMap<>();
+            request.put("color", random.nextBoolean() ? "WHITE" : "BLACK");
+            request.put("selectedPieces", mix.pieces().stream().map(Enum::name).toList());
+            request.put("minElo", elo.min());
+            request.put("maxElo", elo.max());
+            request.put("limit", 20);
+
+            workload.add(new Query(mix.label(),
+                    Map.of("fen", fens.get(random.nextInt(fens.size())), "request", request)));
+        }
+        return workload;
+    }
+
+    /**
+     * Run the queries with at most {@code concurrency} in flight, storing each latency
+     * in nanoseconds at the query's index. Returns the number of failed queries.
+     */
+    private static int execute(ExecutionGraphQlService graphQlService, List<Query> queries,
+                               int concurrency, long[] latencies) {
+        AtomicInteger errors = new AtomicInteger();
+        Flux.range(0, queries.size())
+                .flatMap(i -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return graphQlService.execute(new DefaultExecutionGraphQlRequest(
+                                    QUERY, null, queries.get(i).variables(), null, "loadtest-" + i, null))
+                            .doOnNext(response -> {
+                                latencies[i] = System.nanoTime() - start;
+                                if (!response.getErrors().isEmpty()) {
+                                    errors.incrementAndGet();
+                                    log.debug("Query {} failed: {}", i, response.getErrors());
+                                }
+                            });
+                }), concurrency)
+                .blockLast();
+        return errors.get();
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50=%.1f ms, p95=%.1f ms, p99=%.1f ms, max=%.1f ms",
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1_000_000.0);
+    }
+
+    // Nearest-rank percentile of a sorted array, in milliseconds
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1_000_000.0;
+    }
+
+    private record Query(String label, Map<String, Object> variables) {
+    }
+}
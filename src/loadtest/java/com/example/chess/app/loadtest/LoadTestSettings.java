@@ -0,0 +1,91 @@
+package com.example.chess.app.loadtest;
+
+import com.example.chess.app.dto.enums.PieceType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Harness configuration, read from {@code loadtest.*} system properties so it can be
+ * passed straight through Gradle, e.g. {@code ./gradlew loadTest -Dloadtest.positions=10000000}.
+ *
+ * @param positions      stop generating games once the corpus holds at least this many positions
+ * @param maxPlies       longest synthetic game; game lengths are uniform in [maxPlies / 2, maxPlies]
+ * @param corpusElo      Elo range the synthetic players are drawn from
+ * @param seed           seed for the corpus and the query mix, so runs are reproducible
+ * @param r2dbcUrl       existing database to use instead of starting a container, or null
+ * @param postgresImage  container image when no URL is given
+ * @param skipIngest     reuse the corpus already in the database
+ * @param ingestBatch    games per ingest batch (one transaction each)
+ * @param ingestParallel ingest batches written concurrently
+ * @param engine         value for {@code chess.similarity.engine}
+ * @param cache          keep the similarity result cache on; off by default so every query hits the engine
+ * @param queries        measured queries
+ * @param warmup         unmeasured queries run first
+ * @param concurrency    queries in flight at once
+ * @param sampleFens     distinct corpus positions the queries are drawn from
+ * @param pieceMix       weighted piece selections, e.g. {@code PAWN:4,KNIGHT+BISHOP:2}
+ * @param queryElo       Elo ranges the queries are drawn from uniformly, e.g. {@code 500-2500,1800-2200}
+ */
+record LoadTestSettings(long positions, int maxPlies, EloRange corpusElo, long seed,
+                        String r2dbcUrl, String postgresImage, boolean skipIngest,
+                        int ingestBatch, int ingestParallel, String engine, boolean cache,
+                        int queries, int warmup, int concurrency, int sampleFens,
+                        List<PieceMix> pieceMix, List<EloRange> queryElo) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Long.getLong("loadtest.positions", 1_000_000),
+                Integer.getInteger("loadtest.max-plies", 160),
+                EloRange.parse(System.getProperty("loadtest.corpus-elo", "800-2800")),
+                Long.getLong("loadtest.seed", 42),
+                System.getProperty("loadtest.r2dbc-url"),
+                System.getProperty("loadtest.postgres-image", "postgres:16-alpine"),
+                Boolean.getBoolean("loadtest.skip-ingest"),
+                Integer.getInteger("loadtest.ingest-batch", 500),
+                Integer.getInteger("loadtest.ingest-parallel", 4),
+                System.getProperty("loadtest.engine", "sql"),
+                Boolean.getBoolean("loadtest.cache"),
+                Integer.getInteger("loadtest.queries", 2000),
+                Integer.getInteger("loadtest.warmup", 200),
+                Integer.getInteger("loadtest.concurrency", 16),
+                Integer.getInteger("loadtest.sample-fens", 1000),
+                Arrays.stream(System.getProperty("loadtest.piece-mix",
+                                "PAWN:4,KNIGHT+BISHOP:2,ROOK+QUEEN:1,PAWN+KNIGHT+BISHOP+ROOK+QUEEN+KING:1").split(","))
+                        .map(PieceMix::parse)
+                        .toList(),
+                Arrays.stream(System.getProperty("loadtest.query-elo", "500-2500,1200-1800,2000-2400").split(","))
+                        .map(EloRange::parse)
+                        .toList());
+    }
+
+    record EloRange(int min, int max) {
+
+        static EloRange parse(String value) {
+            String[] bounds = value.trim().split("-");
+            return new EloRange(Integer.parseInt(bounds[0].trim()), Integer.parseInt(bounds[1].trim()));
+        }
+
+        @Override
+        public String toString() {
+            return min + "-" + max;
+        }
+    }
+
+    record PieceMix(Set<PieceType> pieces, int weight) {
+
+        static PieceMix parse(String value) {
+            String[] parts = value.trim().split(":");
+            Set<PieceType> pieces = Arrays.stream(parts[0].split("\\+"))
+                    .map(piece -> PieceType.valueOf(piece.trim().toUpperCase()))
+                    .collect(Collectors.toUnmodifiableSet());
+            return new PieceMix(pieces, parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+
+        String label() {
+            return pieces.stream().sorted().map(PieceType::name).collect(Collectors.joining("+"));
+        }
+    }
+}
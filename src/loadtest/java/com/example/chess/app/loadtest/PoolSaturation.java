@@ -0,0 +1,40 @@
+package com.example.chess.app.loadtest;
+
+import io.r2dbc.pool.PoolMetrics;
+
+/**
+ * Running summary of periodic connection pool samples taken while the workload runs.
+ * Updated from a single sampling thread and read once the workload has finished.
+ */
+final class PoolSaturation {
+
+    private int maxSize;
+    private int peakAcquired;
+    private int peakPending;
+    private long pendingTotal;
+    private long saturatedSamples;
+    private long samples;
+
+    void sample(PoolMetrics metrics) {
+        int acquired = metrics.acquiredSize();
+        int pending = metrics.pendingAcquireSize();
+
+        maxSize = metrics.getMaxAllocatedSize();
+        peakAcquired = Math.max(peakAcquired, acquired);
+        peakPending = Math.max(peakPending, pending);
+        pendingTotal += pending;
+        if (acquired >= maxSize) {
+            saturatedSamples++;
+        }
+        samples++;
+    }
+
+    @Override
+    public String toString() {
+        if (samples == 0) {
+            return "no pool samples";
+        }
+        return String.format("max size %d, peak acquired %d, peak pending %d, mean pending %.1f, saturated in %.1f%% of samples",
+                maxSize, peakAcquired, peakPending, (double) pendingTotal / samples, 100.0 * saturatedSamples / samples);
+    }
+}
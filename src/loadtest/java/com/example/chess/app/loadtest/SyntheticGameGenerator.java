@@ -0,0 +1,407 @@
+package com.example.chess.app.loadtest;
+
+import com.example.chess.app.dto.GameDTO;
+import com.example.chess.app.dto.GameMetadataDTO;
+import com.example.chess.app.dto.PositionDTO;
+import com.example.chess.app.model.Board;
+import com.example.chess.app.util.FenParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Produces random but legal games in the shape of the Kafka game messages. Moves are
+ * picked uniformly from the legal moves of a small mailbox move generator, so the
+ * games are nonsense chess but every stored position is reachable. Castling and en
+ * passant captures are never played; promotions are always to a queen.
+ */
+final class SyntheticGameGenerator {
+
+    private static final int PAWN = 1;
+    private static final int KNIGHT = 2;
+    private static final int BISHOP = 3;
+    private static final int ROOK = 4;
+    private static final int QUEEN = 5;
+    private static final int KING = 6;
+
+    // FEN letters indexed by piece type, white in upper case
+    private static final String PIECE_LETTERS = " PNBRQK";
+
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    private static final int[][] DIAGONALS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] LINES = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    private static final int[] START = {
+            ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK,
+            PAWN, PAWN, PAWN, PAWN, PAWN, PAWN, PAWN, PAWN,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            -PAWN, -PAWN, -PAWN, -PAWN, -PAWN, -PAWN, -PAWN, -PAWN,
+            -ROOK, -KNIGHT, -BISHOP, -QUEEN, -KING, -BISHOP, -KNIGHT, -ROOK};
+
+    private static final String[] GAME_TYPES = {"bullet", "blitz", "rapid", "classical"};
+
+    private final SplittableRandom random;
+    private final int minElo;
+    private final int maxElo;
+    private final int maxPlies;
+
+    // Mailbox state: +type for white pieces, -type for black, 0 for empty; 0 = a1 .. 63 = h8
+    private final int[] squares = new int[64];
+    private boolean whiteToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfMoveClock;
+    private int fullMoveNumber;
+
+    SyntheticGameGenerator(long seed, int minElo, int maxElo, int maxPlies) {
+        this.random = new SplittableRandom(seed);
+        this.minElo = minElo;
+        this.maxElo = maxElo;
+        this.maxPlies = maxPlies;
+    }
+
+    GameDTO nextGame(String gameId) {
+        reset();
+
+        int plies = maxPlies / 2 + random.nextInt(maxPlies / 2 + 1);
+        List<PositionDTO> positions = new ArrayList<>(plies + 1);
+        positions.add(positionDto(fen(), 0));
+
+        String result = null;
+        int[] moves = new int[256];
+        for (int ply = 1; ply <= plies && result == null; ply++) {
+            int count = legalMoves(moves);
+            if (count == 0) {
+                boolean inCheck = isAttacked(kingSquare(whiteToMove), !whiteToMove);
+                result = !inCheck ? "1/2-1/2" : whiteToMove ? "0-1" : "1-0";
+                break;
+            }
+            play(squares, moves[random.nextInt(count)], true);
+            positions.add(positionDto(fen(), ply));
+            if (halfMoveClock >= 100) {
+                result = "1/2-1/2";
+            }
+        }
+        if (result == null) {
+            // Adjudicated: the generator does not evaluate positions, so pick an outcome
+            result = switch (random.nextInt(3)) {
+                case 0 -> "1-0";
+                case 1 -> "0-1";
+                default -> "1/2-1/2";
+            };
+        }
+
+        GameMetadataDTO metadata = new GameMetadataDTO();
+        metadata.setGameId(gameId);
+        metadata.setResult(result);
+        metadata.setWhiteElo(elo());
+        metadata.setBlackElo(elo());
+        metadata.setGameType(GAME_TYPES[random.nextInt(GAME_TYPES.length)]);
+        metadata.setWhiteName("synthetic-" + random.nextInt(10_000));
+        metadata.setBlackName("synthetic-" + random.nextInt(10_000));
+        metadata.setSite("loadtest");
+
+        GameDTO game = new GameDTO();
+        game.setGameMetadata(metadata);
+        game.setPositions(positions);
+        return game;
+    }
+
+    private int elo() {
+        return minElo + random.nextInt(maxElo - minElo + 1);
+    }
+
+    private void reset() {
+        System.arraycopy(START, 0, squares, 0, 64);
+        whiteToMove = true;
+        castlingRights = Board.WHITE_KINGSIDE | Board.WHITE_QUEENSIDE | Board.BLACK_KINGSIDE | Board.BLACK_QUEENSIDE;
+        enPassantSquare = Board.NO_SQUARE;
+        halfMoveClock = 0;
+        fullMoveNumber = 1;
+    }
+
+    /**
+     * Fill {@code moves} with the legal moves of the side to move, encoded as
+     * {@code from | to << 6}, and return how many there are.
+     */
+    private int legalMoves(int[] moves) {
+        int pseudo = pseudoLegalMoves(moves);
+        int[] scratch = new int[64];
+        int count = 0;
+        for (int i = 0; i < pseudo; i++) {
+            System.arraycopy(squares, 0, scratch, 0, 64);
+            play(scratch, moves[i], false);
+            int king = findKing(scratch, whiteToMove);
+            if (!isAttacked(scratch, king, !whiteToMove)) {
+                moves[count++] = moves[i];
+            }
+        }
+        return count;
+    }
+
+    private int pseudoLegalMoves(int[] moves) {
+        int sign = whiteToMove ? 1 : -1;
+        int count = 0;
+        for (int from = 0; from < 64; from++) {
+            int piece = squares[from] * sign;
+            if (piece <= 0) {
+                continue;
+            }
+            int file = from & 7;
+            int rank = from >>> 3;
+            switch (piece) {
+                case PAWN -> {
+                    int forward = rank + sign;
+                    if (squares[forward * 8 + file] == 0) {
+                        moves[count++] = from | (forward * 8 + file) << 6;
+                        int startRank = whiteToMove ? 1 : 6;
+                        int doubleStep = rank + 2 * sign;
+                        if (rank == startRank && squares[doubleStep * 8 + file] == 0) {
+                            moves[count++] = from | (doubleStep * 8 + file) << 6;
+                        }
+                    }
+                    for (int df = -1; df <= 1; df += 2) {
+                        int target = file + df;
+                        if (target >= 0 && target < 8 && squares[forward * 8 + target] * sign < 0) {
+                            moves[count++] = from | (forward * 8 + target) << 6;
+                        }
+                    }
+                }
+                case KNIGHT -> count = steps(moves, count, from, KNIGHT_STEPS, sign);
+                case KING -> count = steps(moves, count, from, KING_STEPS, sign);
+                case BISHOP -> count = slides(moves, count, from, DIAGONALS, sign);
+                case ROOK -> count = slides(moves, count, from, LINES, sign);
+                case QUEEN -> count = slides(moves, slides(moves, count, from, DIAGONALS, sign), from, LINES, sign);
+                default -> throw new IllegalStateException("Unknown piece " + piece);
+            }
+        }
+        return count;
+    }
+
+    private int steps(int[] moves, int count, int from, int[][] deltas, int sign) {
+        for (int[] delta : deltas) {
+            int file = (from & 7) + delta[0];
+            int rank = (from >>> 3) + delta[1];
+            if (file >= 0 && file < 8 && rank >= 0 && rank < 8 && squares[rank * 8 + file] * sign <= 0) {
+                moves[count++] = from | (rank * 8 + file) << 6;
+            }
+        }
+        return count;
+    }
+
+    private int slides(int[] moves, int count, int from, int[][] directions, int sign) {
+        for (int[] direction : directions) {
+            int file = (from & 7) + direction[0];
+            int rank = (from >>> 3) + direction[1];
+            while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                int occupant = squares[rank * 8 + file] * sign;
+                if (occupant > 0) {
+                    break;
+                }
+                moves[count++] = from | (rank * 8 + file) << 6;
+                if (occupant < 0) {
+                    break;
+                }
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Apply a move to {@code board}. Only the real board ({@code updateState}) also
+     * advances the side to move, clocks, castling rights and en passant square.
+     */
+    private void play(int[] board, int move, boolean updateState) {
+        int from = move & 63;
+        int to = move >>> 6;
+        int piece = board[from];
+        boolean capture = board[to] != 0;
+        int type = Math.abs(piece);
+
+        board[to] = type == PAWN && (to >>> 3 == 0 || to >>> 3 == 7) ? Integer.signum(piece) * QUEEN : piece;
+        board[from] = 0;
+
+        if (!updateState) {
+            return;
+        }
+
+        enPassantSquare = type == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : Board.NO_SQUARE;
+        halfMoveClock = type == PAWN || capture ? 0 : halfMoveClock + 1;
+        castlingRights &= ~(rightsTouchedBy(from) | rightsTouchedBy(to));
+        if (!whiteToMove) {
+            fullMoveNumber++;
+        }
+        whiteToMove = !whiteToMove;
+    }
+
+    // Moving from or capturing on a king or rook home square loses the matching rights
+    private static int rightsTouchedBy(int square) {
+        return switch (square) {
+            case 4 -> Board.WHITE_KINGSIDE | Board.WHITE_QUEENSIDE;
+            case 0 -> Board.WHITE_QUEENSIDE;
+            case 7 -> Board.WHITE_KINGSIDE;
+            case 60 -> Board.BLACK_KINGSIDE | Board.BLACK_QUEENSIDE;
+            case 56 -> Board.BLACK_QUEENSIDE;
+            case 63 -> Board.BLACK_KINGSIDE;
+            default -> 0;
+        };
+    }
+
+    private int kingSquare(boolean white) {
+        return findKing(squares, white);
+    }
+
+    private static int findKing(int[] board, boolean white) {
+        int king = white ? KING : -KING;
+        for (int square = 0; square < 64; square++) {
+            if (board[square] == king) {
+                return square;
+            }
+        }
+        throw new IllegalStateException("No " + (white ? "white" : "black") + " king on the board");
+    }
+
+    private boolean isAttacked(int square, boolean byWhite) {
+        return isAttacked(squares, square, byWhite);
+    }
+
+    private static boolean isAttacked(int[] board, int square, boolean byWhite) {
+        int sign = byWhite ? 1 : -1;
+        int file = square & 7;
+        int rank = square >>> 3;
+
+        // A white pawn attacks upwards, so it stands one rank below the target
+        int pawnRank = rank - sign;
+        if (pawnRank >= 0 && pawnRank < 8) {
+            for (int df = -1; df <= 1; df += 2) {
+                if (file + df >= 0 && file + df < 8 && board[pawnRank * 8 + file + df] == sign * PAWN) {
+                    return true;
+                }
+            }
+        }
+        return attackedByStep(board, file, rank, KNIGHT_STEPS, sign * KNIGHT)
+                || attackedByStep(board, file, rank, KING_STEPS, sign * KING)
+                || attackedBySlide(board, file, rank, DIAGONALS, sign * BISHOP, sign * QUEEN)
+                || attackedBySlide(board, file, rank, LINES, sign * ROOK, sign * QUEEN);
+    }
+
+    private static boolean attackedByStep(int[] board, int file, int rank, int[][] deltas, int attacker) {
+        for (int[] delta : deltas) {
+            int f = file + delta[0];
+            int r = rank + delta[1];
+            if (f >= 0 && f < 8 && r >= 0 && r < 8 && board[r * 8 + f] == attacker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean attackedBySlide(int[] board, int file, int rank, int[][] directions, int slider, int queen) {
+        for (int[] direction : directions) {
+            int f = file + direction[0];
+            int r = rank + direction[1];
+            while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                int occupant = board[r * 8 + f];
+                if (occupant != 0) {
+                    if (occupant == slider || occupant == queen) {
+                        return true;
+                    }
+                    break;
+                }
+                f += direction[0];
+                r += direction[1];
+            }
+        }
+        return false;
+    }
+
+    private String fen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = squares[rank * 8 + file];
+                if (piece == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(Math.abs(piece));
+                fen.append(piece > 0 ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(whiteToMove ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & Board.WHITE_KINGSIDE) != 0) fen.append('K');
+            if ((castlingRights & Board.WHITE_QUEENSIDE) != 0) fen.append('Q');
+            if ((castlingRights & Board.BLACK_KINGSIDE) != 0) fen.append('k');
+            if ((castlingRights & Board.BLACK_QUEENSIDE) != 0) fen.append('q');
+        }
+        fen.append(' ');
+        if (enPassantSquare == Board.NO_SQUARE) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + (enPassantSquare & 7))).append((char) ('1' + (enPassantSquare >>> 3)));
+        }
+        return fen.append(' ').append(halfMoveClock).append(' ').append(fullMoveNumber).toString();
+    }
+
+    /**
+     * Build the message DTO through the application's FEN parser, which also checks
+     * that every generated position is one the query path accepts.
+     */
+    private static PositionDTO positionDto(String fen, int moveNumber) {
+        Board board = FenParser.parse(fen);
+
+        PositionDTO dto = new PositionDTO();
+        dto.setMoveNumber(moveNumber);
+        dto.setFen(fen);
+        dto.setSideToMove(board.isWhiteToMove() ? "w" : "b");
+        dto.setCastlingRights(board.getCastlingRights());
+        dto.setEnPassantSquare(board.getEnPassantSquare() == Board.NO_SQUARE ? 0 : board.getEnPassantSquare());
+        dto.setHalfmoveClock(board.getHalfMoveClock());
+        dto.setFullmoveNumber(board.getFullMoveNumber());
+
+        dto.setWhitePawns(board.pieces(Board.WHITE_PAWN));
+        dto.setWhiteKnights(squares(board.pieces(Board.WHITE_KNIGHT)));
+        dto.setWhiteBishops(squares(board.pieces(Board.WHITE_BISHOP)));
+        dto.setWhiteRooks(squares(board.pieces(Board.WHITE_ROOK)));
+        dto.setWhiteQueens(squares(board.pieces(Board.WHITE_QUEEN)));
+        dto.setWhiteKing(Long.numberOfTrailingZeros(board.pieces(Board.WHITE_KING)));
+        dto.setBlackPawns(board.pieces(Board.BLACK_PAWN));
+        dto.setBlackKnights(squares(board.pieces(Board.BLACK_KNIGHT)));
+        dto.setBlackBishops(squares(board.pieces(Board.BLACK_BISHOP)));
+        dto.setBlackRooks(squares(board.pieces(Board.BLACK_ROOK)));
+        dto.setBlackQueens(squares(board.pieces(Board.BLACK_QUEEN)));
+        dto.setBlackKing(Long.numberOfTrailingZeros(board.pieces(Board.BLACK_KING)));
+        return dto;
+    }
+
+    private static List<Integer> squares(long bitboard) {
+        List<Integer> squares = new ArrayList<>(Long.bitCount(bitboard));
+        while (bitboard != 0) {
+            squares.add(Long.numberOfTrailingZeros(bitboard));
+            bitboard &= bitboard - 1;
+        }
+        return squares;
+    }
+}
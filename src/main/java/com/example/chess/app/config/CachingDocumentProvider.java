@@ -0,0 +1,98 @@
+package com.example.chess.app.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.execution.preparsed.persisted.PersistedQueryIdInvalid;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Keeps parsed and validated GraphQL documents, so a query text is only parsed and
+ * validated the first time it is seen. Also implements Apollo automatic persisted
+ * queries: a request carrying {@code extensions.persistedQuery.sha256Hash} and no
+ * query text (or an empty one) is served from the document registered under that
+ * hash, or fails with PersistedQueryNotFound so the client resends the full text.
+ *
+ * Both caches are bounded; an evicted document is simply parsed again.
+ */
+@Component
+public class CachingDocumentProvider implements PreparsedDocumentProvider {
+
+    private final Cache<String, PreparsedDocumentEntry> byQuery;
+    private final Cache<String, PreparsedDocumentEntry> byHash;
+
+    public CachingDocumentProvider(MeterRegistry meterRegistry,
+                                   @Value("${chess.graphql.document-cache.maximum-size:1000}") long maximumSize) {
+        this.byQuery = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.byHash = Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byQuery, "graphqlDocuments");
+        CaffeineCacheMetrics.monitor(meterRegistry, byHash, "graphqlPersistedQueries");
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(
+            ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        String query = executionInput.getQuery();
+        String hash = persistedQueryHash(executionInput);
+
+        if (hash == null) {
+            return CompletableFuture.completedFuture(parsed(query, executionInput, parseAndValidate));
+        }
+
+        if (!StringUtils.hasText(query) || PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(query)) {
+            PreparsedDocumentEntry entry = byHash.getIfPresent(hash);
+            return CompletableFuture.completedFuture(entry != null ? entry
+                    : new PreparsedDocumentEntry(new PersistedQueryNotFound(hash)));
+        }
+
+        if (!hash.equals(sha256(query))) {
+            return CompletableFuture.completedFuture(new PreparsedDocumentEntry(new PersistedQueryIdInvalid(hash)));
+        }
+        PreparsedDocumentEntry entry = parsed(query, executionInput, parseAndValidate);
+        if (!entry.hasErrors()) {
+            byHash.put(hash, entry);
+        }
+        return CompletableFuture.completedFuture(entry);
+    }
+
+    // Validation depends only on the document and schema, never on variables
+    private PreparsedDocumentEntry parsed(String query, ExecutionInput executionInput,
+                                          Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        return byQuery.get(query, key -> parseAndValidate.apply(executionInput));
+    }
+
+    private static String persistedQueryHash(ExecutionInput executionInput) {
+        Map<String, Object> extensions = executionInput.getExtensions();
+        if (extensions != null && extensions.get("persistedQuery") instanceof Map<?, ?> persistedQuery
+                && persistedQuery.get("sha256Hash") instanceof String hash) {
+            return hash.toLowerCase();
+        }
+        return null;
+    }
+
+    private static String sha256(String query) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(query.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
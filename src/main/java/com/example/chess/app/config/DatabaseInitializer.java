@@ -15,8 +15,33 @@ import reactor.core.publisher.Mono;
 @RequiredArgsConstructor
 public class DatabaseInitializer {
 
+    // First server version with a built-in bit_count(bit)
+    private static final int NATIVE_BIT_COUNT_VERSION = 140000;
+
+    // Function name left as %s, see bitCountFunction
+    private static final String NATIVE_BIT_COUNT = """
+        CREATE OR REPLACE FUNCTION %s(val bigint)
+        RETURNS int AS $$
+            SELECT pg_catalog.bit_count(val::bit(64))::int;
+        $$ LANGUAGE SQL IMMUTABLE STRICT PARALLEL SAFE;
+    """;
+
+    // Sign bit counted separately so none of the shifts or sums can overflow bigint
+    private static final String SWAR_BIT_COUNT = """
+        CREATE OR REPLACE FUNCTION %s(val bigint)
+        RETURNS int AS $$
+            SELECT (CASE WHEN val < 0 THEN 1 ELSE 0 END)
+                + ((c + (c >> 8) + (c >> 16) + (c >> 24) + (c >> 32) + (c >> 40) + (c >> 48) + (c >> 56)) & 127)::int
+            FROM (SELECT (b + (b >> 4)) & 1085102592571150095 AS c
+                  FROM (SELECT (a & 3689348814741910323) + ((a >> 2) & 3689348814741910323) AS b
+                        FROM (SELECT x - ((x >> 1) & 6148914691236517205) AS a
+                              FROM (SELECT val & 9223372036854775807 AS x) s0) s1) s2) s3;
+        $$ LANGUAGE SQL IMMUTABLE STRICT PARALLEL SAFE;
+    """;
+
     private final R2dbcEntityTemplate template;
     private final DatabaseClient databaseClient;
+    private final PartitionManager partitionManager;
 
     @Value("${spring.r2dbc.database:chess_position_db}")
     private String database;
@@ -30,18 +55,42 @@ public class DatabaseInitializer {
         createBitCountFunction()  // 👈 create this first
                 .then(createGamesTable())
                 .then(createPositionsTable())
+                .then(migratePieceArraysToBitboards())
+                .then(partitionPositionsTable())
+                .then(partitionManager.ensurePartitions())
+                .then(addZobristHashColumn())
+                .then(addGameColumnsToPositions())
+                .then(addMaterialSignatureColumn())
+                .then(createBoardPositionsTable())
+                .then(createBackfillMarkersTable())
                 .doOnSuccess(v -> log.info("Database schema initialized successfully."))
                 .doOnError(e -> log.error("Error initializing database schema:", e))
                 .block();
     }
 
+    /**
+     * bit_count(bigint) is used by every similarity query. Postgres 14+ ships a native
+     * bit_count(bit), so wrap that; older servers get an arithmetic (SWAR) popcount.
+     * Both keep the int return type so CREATE OR REPLACE works over earlier versions.
+     */
     private Mono<Void> createBitCountFunction() {
-        return databaseClient.sql("""
-        CREATE OR REPLACE FUNCTION bit_count(val bigint)
-        RETURNS int AS $$
-            SELECT length(replace((val::bit(64))::text, '0', ''))::int;
-        $$ LANGUAGE SQL IMMUTABLE STRICT;
-    """).then();
+        return databaseClient.sql("SELECT current_setting('server_version_num')::int AS version")
+                .map(row -> row.get("version", Integer.class))
+                .one()
+                .flatMap(version -> {
+                    boolean nativePopcount = version >= NATIVE_BIT_COUNT_VERSION;
+                    log.info("Postgres server version {}, using {} bit_count", version,
+                            nativePopcount ? "native" : "SWAR");
+                    return databaseClient.sql(bitCountFunction("bit_count", nativePopcount)).then();
+                });
+    }
+
+    /**
+     * The DDL of the native or SWAR bit_count under {@code name}, so tests and
+     * benchmarks can install both side by side
+     */
+    static String bitCountFunction(String name, boolean nativePopcount) {
+        return (nativePopcount ? NATIVE_BIT_COUNT : SWAR_BIT_COUNT).formatted(name);
     }
 
     private Mono<Void> createGamesTable() {
@@ -65,22 +114,26 @@ public class DatabaseInitializer {
                 .then();
     }
 
+    /**
+     * Range-partitioned by ingest month; each partition carries its own primary key
+     * on id, as a key on the parent would have to include ingested_at.
+     */
     private Mono<Void> createPositionsTable() {
         return databaseClient.sql("""
             CREATE TABLE IF NOT EXISTS positions (
-                id UUID PRIMARY KEY,
+                id UUID NOT NULL,
                 game_id VARCHAR(255) REFERENCES games(id),
                 move_number INTEGER,
                 white_king INTEGER,
                 black_king INTEGER,
-                white_queens INTEGER[],
-                white_rooks INTEGER[],
-                white_bishops INTEGER[],
-                white_knights INTEGER[],
-                black_queens INTEGER[],
-                black_rooks INTEGER[],
-                black_bishops INTEGER[],
-                black_knights INTEGER[],
+                white_queens BIGINT,
+                white_rooks BIGINT,
+                white_bishops BIGINT,
+                white_knights BIGINT,
+                black_queens BIGINT,
+                black_rooks BIGINT,
+                black_bishops BIGINT,
+                black_knights BIGINT,
                 white_pawns BIGINT,
                 black_pawns BIGINT,
                 side_to_move VARCHAR(1),
@@ -88,26 +141,159 @@ public class DatabaseInitializer {
                 en_passant_square INTEGER,
                 half_move_clock INTEGER,
                 full_move_number INTEGER,
-                fen VARCHAR(100)
-            )
+                fen VARCHAR(100),
+                zobrist_hash BIGINT,
+                min_elo INTEGER,
+                max_elo INTEGER,
+                game_type VARCHAR(50),
+                material_signature INTEGER,
+                ingested_at TIMESTAMPTZ NOT NULL DEFAULT now()
+            ) PARTITION BY RANGE (ingested_at)
             """)
                 .then();
     }
 
-    private Mono<Void> createIndexes() {
+    /**
+     * Tables created before pieces were stored as bitboards hold INTEGER[] square lists.
+     * Convert any such column in place; a no-op once every column is BIGINT.
+     */
+    private Mono<Void> migratePieceArraysToBitboards() {
+        return databaseClient.sql("""
+        CREATE OR REPLACE FUNCTION squares_to_bitboard(squares INTEGER[])
+        RETURNS BIGINT AS $$
+            SELECT COALESCE(bit_or(1::bigint << s), 0) FROM unnest(squares) AS s;
+        $$ LANGUAGE SQL IMMUTABLE;
+    """).then()
+                .then(databaseClient.sql("""
+        DO $$
+        DECLARE
+            alterations TEXT;
+        BEGIN
+            SELECT string_agg(format('ALTER COLUMN %I TYPE BIGINT USING squares_to_bitboard(%I)', column_name, column_name), ', ')
+            INTO alterations
+            FROM information_schema.columns
+            WHERE table_schema = current_schema()
+              AND table_name = 'positions'
+              AND data_type = 'ARRAY';
+
+            IF alterations IS NOT NULL THEN
+                RAISE NOTICE 'Migrating piece arrays to bitboards: %', alterations;
+                DROP INDEX IF EXISTS gin_white_queens, gin_white_rooks, gin_white_bishops, gin_white_knights,
+                    gin_black_queens, gin_black_rooks, gin_black_bishops, gin_black_knights;
+                -- a single ALTER TABLE rewrites the table once for all columns
+                EXECUTE 'ALTER TABLE positions ' || alterations;
+            END IF;
+        END $$;
+    """).then());
+    }
+
+    /**
+     * Tables created before partitioning are a plain heap. Turn such a table into the
+     * positions_legacy partition, covering everything before the current month, under
+     * a new partitioned parent. Only catalog changes and one validation scan; no rows move.
+     *
+     * Its indexes are renamed after the partition so the parent can reuse their names;
+     * creating the parent's indexes later attaches them instead of building new ones.
+     */
+    private Mono<Void> partitionPositionsTable() {
+        return databaseClient.sql("""
+        DO $$
+        DECLARE
+            idx RECORD;
+        BEGIN
+            IF EXISTS (SELECT 1 FROM pg_class
+                       WHERE relname = 'positions' AND relkind = 'r'
+                         AND relnamespace = current_schema()::regnamespace) THEN
+                RAISE NOTICE 'Converting positions to a partitioned table';
+                ALTER TABLE positions RENAME TO positions_legacy;
+                FOR idx IN SELECT c.relname FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                           WHERE i.indrelid = 'positions_legacy'::regclass LOOP
+                    EXECUTE format('ALTER INDEX %I RENAME TO %I', idx.relname, 'positions_legacy_' || idx.relname);
+                END LOOP;
+                ALTER TABLE positions_legacy
+                    ADD COLUMN ingested_at TIMESTAMPTZ NOT NULL DEFAULT '1970-01-01 00:00:00+00';
+
+                CREATE TABLE positions (
+                    LIKE positions_legacy INCLUDING DEFAULTS,
+                    FOREIGN KEY (game_id) REFERENCES games(id)
+                ) PARTITION BY RANGE (ingested_at);
+                ALTER TABLE positions ALTER COLUMN ingested_at SET DEFAULT now();
+                EXECUTE format('ALTER TABLE positions ATTACH PARTITION positions_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                        date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC');
+            END IF;
+        END $$;
+    """).then();
+    }
+
+    /**
+     * Key of exact-position lookups; its index is built by IndexManager. Rows written
+     * before the column existed are filled in by ZobristBackfillService.
+     */
+    private Mono<Void> addZobristHashColumn() {
+        return databaseClient.sql("""
+        ALTER TABLE positions ADD COLUMN IF NOT EXISTS zobrist_hash BIGINT;
+    """).then();
+    }
+
+    /**
+     * Lower and higher Elo of the game plus its type, denormalized so the similarity
+     * prefilter runs on positions alone. Existing rows are filled in by GameFieldsBackfillService.
+     */
+    private Mono<Void> addGameColumnsToPositions() {
+        return databaseClient.sql("""
+        ALTER TABLE positions
+            ADD COLUMN IF NOT EXISTS min_elo INTEGER,
+            ADD COLUMN IF NOT EXISTS max_elo INTEGER,
+            ADD COLUMN IF NOT EXISTS game_type VARCHAR(50);
+    """).then();
+    }
+
+    /**
+     * Packed piece counts the similarity search buckets candidates by. Existing rows are
+     * filled in by MaterialSignatureBackfillService; the index is built by IndexManager.
+     */
+    private Mono<Void> addMaterialSignatureColumn() {
+        return databaseClient.sql("""
+        ALTER TABLE positions ADD COLUMN IF NOT EXISTS material_signature INTEGER;
+    """).then();
+    }
+
+    /**
+     * One row per distinct board, keyed by the Zobrist hash positions already carry, so
+     * similarity is scored once per board and fanned out to the positions sharing its
+     * hash. Filled at ingest and, for older rows, by BoardPositionBackfillService.
+     */
+    private Mono<Void> createBoardPositionsTable() {
+        return databaseClient.sql("""
+        CREATE TABLE IF NOT EXISTS board_positions (
+            zobrist_hash BIGINT PRIMARY KEY,
+            white_king INTEGER,
+            black_king INTEGER,
+            white_queens BIGINT,
+            white_rooks BIGINT,
+            white_bishops BIGINT,
+            white_knights BIGINT,
+            white_pawns BIGINT,
+            black_queens BIGINT,
+            black_rooks BIGINT,
+            black_bishops BIGINT,
+            black_knights BIGINT,
+            black_pawns BIGINT,
+            material_signature INTEGER NOT NULL
+        );
+    """).then();
+    }
+
+    /**
+     * One row per finished background backfill, with the ingest time up to which every
+     * row is known to be covered, so a restart only checks the rows written since.
+     */
+    private Mono<Void> createBackfillMarkersTable() {
         return databaseClient.sql("""
-        CREATE INDEX IF NOT EXISTS gin_white_queens ON positions USING GIN (white_queens);
-        CREATE INDEX IF NOT EXISTS gin_white_rooks ON positions USING GIN (white_rooks);
-        CREATE INDEX IF NOT EXISTS gin_white_bishops ON positions USING GIN (white_bishops);
-        CREATE INDEX IF NOT EXISTS gin_white_knights ON positions USING GIN (white_knights);
-
-        CREATE INDEX IF NOT EXISTS gin_black_queens ON positions USING GIN (black_queens);
-        CREATE INDEX IF NOT EXISTS gin_black_rooks ON positions USING GIN (black_rooks);
-        CREATE INDEX IF NOT EXISTS gin_black_bishops ON positions USING GIN (black_bishops);
-        CREATE INDEX IF NOT EXISTS gin_black_knights ON positions USING GIN (black_knights);
-
-        CREATE INDEX IF NOT EXISTS idx_white_pawns ON positions(white_pawns);
-        CREATE INDEX IF NOT EXISTS idx_black_pawns ON positions(black_pawns);
+        CREATE TABLE IF NOT EXISTS backfill_markers (
+            name TEXT PRIMARY KEY,
+            covered_until TIMESTAMPTZ NOT NULL
+        );
     """).then();
     }
-}
\ No newline at end of file
+}
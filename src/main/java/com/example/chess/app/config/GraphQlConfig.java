@@ -0,0 +1,54 @@
+package com.example.chess.app.config;
+
+import com.example.chess.app.model.Position;
+import com.example.chess.app.util.BitboardUtils;
+import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.execution.RuntimeWiringConfigurer;
+
+import java.util.Map;
+import java.util.function.Function;
+
+@Configuration
+public class GraphQlConfig {
+
+    private static final Map<String, Function<Position, Long>> PIECE_FIELDS = Map.of(
+            "whiteQueens", Position::getWhiteQueens,
+            "whiteRooks", Position::getWhiteRooks,
+            "whiteBishops", Position::getWhiteBishops,
+            "whiteKnights", Position::getWhiteKnights,
+            "blackQueens", Position::getBlackQueens,
+            "blackRooks", Position::getBlackRooks,
+            "blackBishops", Position::getBlackBishops,
+            "blackKnights", Position::getBlackKnights);
+
+    /**
+     * Skip parsing and validation for documents already seen, and accept Apollo
+     * automatic persisted queries
+     */
+    @Bean
+    public GraphQlSourceBuilderCustomizer documentCacheCustomizer(CachingDocumentProvider documentProvider) {
+        return builder -> builder.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(documentProvider));
+    }
+
+    /**
+     * Pieces are stored as bitboards, but the Position piece fields keep returning the
+     * square lists they always have; the bitboards themselves are the *Bitboard fields
+     */
+    @Bean
+    public RuntimeWiringConfigurer positionPieceFields() {
+        return wiring -> wiring.type("Position", type -> {
+            PIECE_FIELDS.forEach((field, pieces) -> type
+                    .dataFetcher(field, env -> {
+                        Long bitboard = pieces.apply(env.getSource());
+                        return bitboard == null ? null : BitboardUtils.toSquares(bitboard).toString();
+                    })
+                    .dataFetcher(field + "Bitboard", env -> {
+                        Long bitboard = pieces.apply(env.getSource());
+                        return bitboard == null ? null : bitboard.toString();
+                    }));
+            return type;
+        });
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.chess.app.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Secondary indexes for the similarity and hydration queries, built with
+ * CREATE INDEX CONCURRENTLY so ingest and searches keep running while they build.
+ * Builds run in the background after startup ({@code chess.db.indexes.build-on-startup})
+ * or on demand through the {@code indexes} actuator endpoint.
+ *
+ * Bitwise predicates such as {@code white_pawns & :x <> 0} cannot use a B-tree, so
+ * indexes only cover columns compared by equality or range.
+ *
+ * Partitioned tables cannot be indexed concurrently as a whole, so their indexes are
+ * built one partition at a time and attached to a parent index (see
+ * {@link #ensurePartitionedIndex}); partitions created later get theirs automatically.
+ */
+@Component
+@Slf4j
+public class IndexManager {
+
+    public static final List<IndexDefinition> INDEXES = List.of(
+            // Hydration by game, the DISTINCT ON (game_id) step and the games join
+            new IndexDefinition("idx_positions_game_id", "positions (game_id)"),
+            // Elo range prefilter; id included so the join can be served index-only
+            new IndexDefinition("idx_games_elo", "games (white_elo, black_elo) INCLUDE (id)"),
+            // King equality prefilter, one per color so either can be used alone
+            new IndexDefinition("idx_positions_white_king", "positions (white_king)"),
+            new IndexDefinition("idx_positions_black_king", "positions (black_king)"),
+            // Exact-position lookups by Zobrist hash
+            new IndexDefinition("idx_positions_zobrist_hash", "positions (zobrist_hash)"),
+            // Pawn structures nearest the query's, picked by the pawn structure index and
+            // matched by equality, one per color like the kings
+            new IndexDefinition("idx_positions_white_pawn_structure", "positions (white_pawns)"),
+            new IndexDefinition("idx_positions_black_pawn_structure", "positions (black_pawns)"),
+            // Material buckets nearest the query first, then the Elo range within each bucket.
+            // Carries every column the bitwise filters and scores read, so a search can run
+            // as an index-only scan
+            new IndexDefinition("idx_positions_material", """
+                    positions (material_signature, min_elo, max_elo) INCLUDE (id, game_id, move_number,
+                        white_pawns, white_knights, white_bishops, white_rooks, white_queens, white_king,
+                        black_pawns, black_knights, black_bishops, black_rooks, black_queens, black_king)"""),
+            // The same buckets over distinct boards, covering what the filters and scores read
+            new IndexDefinition("idx_board_positions_material", """
+                    board_positions (material_signature) INCLUDE (zobrist_hash,
+                        white_pawns, white_knights, white_bishops, white_rooks, white_queens, white_king,
+                        black_pawns, black_knights, black_bishops, black_rooks, black_queens, black_king)"""),
+            // Fanning board scores out to the positions within the Elo range, index-only
+            new IndexDefinition("idx_positions_board_occurrences",
+                    "positions (zobrist_hash, min_elo, max_elo) INCLUDE (id, game_id, move_number)"));
+
+    // The original pawn indexes only ever faced the bitwise prefilter and are replaced by the
+    // pawn structure ones above; the Elo covering index was superseded by the material one
+    // once every search filtered on buckets
+    static final List<String> OBSOLETE_INDEXES = List.of("idx_white_pawns", "idx_black_pawns", "idx_positions_elo_pieces");
+
+    private final DatabaseClient databaseClient;
+    private final boolean buildOnStartup;
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    public IndexManager(@Qualifier("ingestDatabaseClient") DatabaseClient databaseClient,
+                        @Value("${chess.db.indexes.build-on-startup:true}") boolean buildOnStartup) {
+        this.databaseClient = databaseClient;
+        this.buildOnStartup = buildOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (buildOnStartup) {
+            buildInBackground();
+        }
+    }
+
+    /**
+     * Start {@link #ensureIndexes()} without waiting for it. Returns false if a build
+     * was already running.
+     */
+    public boolean buildInBackground() {
+        // Claimed here rather than in ensureIndexes so the answer matches what actually runs
+        if (!building.compareAndSet(false, true)) {
+            log.info("Index build already in progress");
+            return false;
+        }
+        buildAll()
+                .doFinally(signal -> building.set(false))
+                .doOnError(e -> log.error("Error building indexes:", e))
+                .onErrorComplete()
+                .subscribe();
+        return true;
+    }
+
+    /**
+     * Build every missing index, rebuilding any left invalid by an interrupted
+     * concurrent build, and drop obsolete ones. Only one build runs at a time;
+     * a second call while one is running completes immediately.
+     */
+    public Mono<Void> ensureIndexes() {
+        return Mono.defer(() -> {
+            if (!building.compareAndSet(false, true)) {
+                log.info("Index build already in progress");
+                return Mono.<Void>empty();
+            }
+            return buildAll().doFinally(signal -> building.set(false));
+        });
+    }
+
+    private Mono<Void> buildAll() {
+        return status()
+                .flatMapMany(status -> Flux.fromIterable(INDEXES)
+                        .concatMap(index -> ensureIndex(index, status.get(index.name()))))
+                // Including the copies kept on the legacy partition when positions was partitioned
+                .thenMany(Flux.fromIterable(OBSOLETE_INDEXES)
+                        .concatMapIterable(name -> List.of(name, PartitionManager.LEGACY_PARTITION + "_" + name))
+                        .concatMap(name -> execute("DROP INDEX CONCURRENTLY IF EXISTS " + name)))
+                .then();
+    }
+
+    /**
+     * Validity of each managed index that exists, keyed by name
+     */
+    public Mono<Map<String, Boolean>> status() {
+        return validity(INDEXES.stream().map(IndexDefinition::name).toList());
+    }
+
+    public boolean isBuilding() {
+        return building.get();
+    }
+
+    private Mono<Map<String, Boolean>> validity(List<String> names) {
+        return databaseClient.sql("""
+                SELECT c.relname AS name, i.indisvalid AS valid
+                FROM pg_index i
+                JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE c.relnamespace = current_schema()::regnamespace
+                  AND c.relname = ANY(:names)
+                """)
+                .bind("names", names.toArray(new String[0]))
+                .map(row -> Map.entry(row.get("name", String.class), row.get("valid", Boolean.class)))
+                .all()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    private Mono<Void> ensureIndex(IndexDefinition index, Boolean valid) {
+        if (Boolean.TRUE.equals(valid)) {
+            return Mono.empty();
+        }
+        return isPartitioned(index.table())
+                .flatMap(partitioned -> partitioned
+                        ? ensurePartitionedIndex(index)
+                        : buildIndex(index.name(), index.definition(), valid));
+    }
+
+    /**
+     * Create the parent index on the partitioned table alone, which leaves it invalid,
+     * then build the index of every partition still missing one concurrently and attach
+     * it. The parent turns valid once the last partition is attached, so an interrupted
+     * build simply resumes with the remaining partitions.
+     */
+    private Mono<Void> ensurePartitionedIndex(IndexDefinition index) {
+        return execute("CREATE INDEX IF NOT EXISTS " + index.name() + " ON ONLY " + index.definition())
+                .thenMany(partitionsWithoutIndex(index))
+                .concatMap(partition -> {
+                    String partitionIndex = partition + "_" + index.name();
+                    return validity(List.of(partitionIndex))
+                            .flatMap(status -> buildIndex(partitionIndex, partition + " " + index.columns(),
+                                    status.get(partitionIndex)))
+                            .then(execute("ALTER INDEX " + index.name() + " ATTACH PARTITION " + partitionIndex));
+                })
+                .then();
+    }
+
+    private Mono<Void> buildIndex(String name, String definition, Boolean valid) {
+        if (Boolean.TRUE.equals(valid)) {
+            return Mono.empty();
+        }
+
+        // IF NOT EXISTS would keep an invalid index from a failed concurrent build, so drop it first
+        Mono<Void> dropInvalid = valid == null
+                ? Mono.empty()
+                : execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+
+        return dropInvalid.then(Mono.defer(() -> {
+            log.info("Building index {}...", name);
+            long start = System.currentTimeMillis();
+            return execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON " + definition)
+                    .doOnSuccess(v -> log.info("Built index {} in {} ms", name, System.currentTimeMillis() - start));
+        }));
+    }
+
+    private Mono<Boolean> isPartitioned(String table) {
+        return databaseClient.sql("SELECT relkind = 'p' AS partitioned FROM pg_class WHERE oid = to_regclass(:table)")
+                .bind("table", table)
+                .map(row -> row.get("partitioned", Boolean.class))
+                .one()
+                .defaultIfEmpty(false);
+    }
+
+    private Flux<String> partitionsWithoutIndex(IndexDefinition index) {
+        return databaseClient.sql("""
+                SELECT c.relname AS name
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = to_regclass(:table)
+                  AND NOT EXISTS (SELECT 1
+                                  FROM pg_inherits attached
+                                  JOIN pg_index x ON x.indexrelid = attached.inhrelid
+                                  WHERE attached.inhparent = to_regclass(:index) AND x.indrelid = c.oid)
+                ORDER BY c.relname
+                """)
+                .bind("table", index.table())
+                .bind("index", index.name())
+                .map(row -> row.get("name", String.class))
+                .all();
+    }
+
+    // Concurrent index DDL must be sent on its own, outside any transaction block
+    private Mono<Void> execute(String sql) {
+        return databaseClient.sql(sql).then();
+    }
+
+    /**
+     * @param definition the table followed by the column list, as after {@code ON} in CREATE INDEX
+     */
+    public record IndexDefinition(String name, String definition) {
+
+        String table() {
+            return definition.substring(0, definition.indexOf(' '));
+        }
+
+        String columns() {
+            return definition.substring(definition.indexOf(' ') + 1);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.chess.app.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admin access to the managed indexes: GET /actuator/indexes lists their state,
+ * POST /actuator/indexes starts a background build of whatever is missing or invalid.
+ * Not exposed over the web by default, see management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "indexes")
+@RequiredArgsConstructor
+public class IndexesEndpoint {
+
+    private final IndexManager indexManager;
+
+    @ReadOperation
+    public Mono<Map<String, Object>> indexes() {
+        return indexManager.status().map(status -> {
+            Map<String, Object> indexes = new LinkedHashMap<>();
+            for (IndexManager.IndexDefinition index : IndexManager.INDEXES) {
+                Boolean valid = status.get(index.name());
+                indexes.put(index.name(), valid == null ? "missing" : valid ? "valid" : "invalid");
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("building", indexManager.isBuilding());
+            response.put("indexes", indexes);
+            return response;
+        });
+    }
+
+    @WriteOperation
+    public Map<String, Object> build() {
+        return Map.of("started", indexManager.buildInBackground());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.chess.app.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Monthly range partitions of positions by ingested_at (UTC). The partition for the
+ * current month and the next {@code chess.db.partitions.months-ahead} always exist,
+ * so ingest never hits a missing range; there is deliberately no default partition,
+ * which keeps detaching old months a concurrent operation.
+ *
+ * Rows stored before partitioning live in positions_legacy, which covers everything
+ * before the month the table was converted.
+ */
+@Component
+@Slf4j
+public class PartitionManager {
+
+    static final String LEGACY_PARTITION = "positions_legacy";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final DatabaseClient databaseClient;
+    private final int monthsAhead;
+
+    // Newest first, the order searches fan out in
+    private volatile List<String> partitions = List.of();
+
+    public PartitionManager(@Qualifier("ingestDatabaseClient") DatabaseClient databaseClient,
+                            @Value("${chess.db.partitions.months-ahead:2}") int monthsAhead) {
+        this.databaseClient = databaseClient;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @Scheduled(cron = "${chess.db.partitions.maintenance-cron:0 0 3 * * *}", zone = "UTC")
+    public void rollForward() {
+        ensurePartitions()
+                .doOnError(e -> log.error("Error rolling position partitions forward:", e))
+                .onErrorComplete()
+                .subscribe();
+    }
+
+    /**
+     * Create any missing partition from the current month up to the months ahead,
+     * then refresh the list of partitions searches run over.
+     */
+    public Mono<Void> ensurePartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        return Flux.range(0, monthsAhead + 1)
+                .map(current::plusMonths)
+                .concatMap(this::createPartition)
+                .then(refresh());
+    }
+
+    /**
+     * Names of the partitions of positions, newest month first and the legacy partition
+     * last. Empty until the first refresh.
+     */
+    public List<String> partitions() {
+        return partitions;
+    }
+
+    /**
+     * Every partition with its bounds and the planner's row estimate
+     */
+    public Flux<PartitionInfo> describe() {
+        return databaseClient.sql("""
+                SELECT c.relname AS name,
+                       pg_get_expr(c.relpartbound, c.oid) AS bounds,
+                       GREATEST(c.reltuples, 0)::bigint AS estimated_rows
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'positions'::regclass
+                ORDER BY c.relname = :legacy, c.relname DESC
+                """)
+                .bind("legacy", LEGACY_PARTITION)
+                .map(row -> new PartitionInfo(row.get("name", String.class), row.get("bounds", String.class),
+                        row.get("estimated_rows", Long.class)))
+                .all();
+    }
+
+    /**
+     * Detach a past month from positions without blocking ingest or searches. The
+     * table itself is kept, to be archived or dropped by hand.
+     *
+     * The current and future months still receive ingest, and the legacy partition
+     * holds every row stored before partitioning, so detaching any of them requires
+     * {@code force}.
+     */
+    public Mono<Void> detach(String name, boolean force) {
+        return describe()
+                .map(PartitionInfo::name)
+                .any(name::equals)
+                .flatMap(exists -> {
+                    if (!exists) {
+                        return Mono.error(new IllegalArgumentException("Not a partition of positions: " + name));
+                    }
+                    if (!force && LEGACY_PARTITION.equals(name)) {
+                        return Mono.error(new IllegalArgumentException(
+                                "Detaching the legacy partition drops every pre-partitioning row from searches; pass force to confirm"));
+                    }
+                    if (!force && name.compareTo(partitionName(YearMonth.now(ZoneOffset.UTC))) >= 0) {
+                        return Mono.error(new IllegalArgumentException(
+                                "Cannot detach a current or future partition without force: " + name));
+                    }
+                    log.info("Detaching partition {}...", name);
+                    // Validated against the catalog above, so safe to splice in
+                    return databaseClient.sql("ALTER TABLE positions DETACH PARTITION " + name + " CONCURRENTLY").then();
+                })
+                .then(refresh());
+    }
+
+    private Mono<Void> createPartition(YearMonth month) {
+        // Bounds in UTC so they line up regardless of the session time zone
+        return databaseClient.sql(String.format("""
+                CREATE TABLE IF NOT EXISTS %s PARTITION OF positions (PRIMARY KEY (id))
+                FOR VALUES FROM ('%s 00:00:00+00') TO ('%s 00:00:00+00')
+                """, partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1)))
+                .then();
+    }
+
+    private Mono<Void> refresh() {
+        return describe()
+                .map(PartitionInfo::name)
+                .collectList()
+                .doOnNext(names -> partitions = List.copyOf(names))
+                .then();
+    }
+
+    static String partitionName(YearMonth month) {
+        return "positions_" + month.format(PARTITION_SUFFIX);
+    }
+
+    public record PartitionInfo(String name, String bounds, long estimatedRows) {
+    }
+}
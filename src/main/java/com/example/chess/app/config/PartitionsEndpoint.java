@@ -0,0 +1,39 @@
+package com.example.chess.app.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin access to the partitions of positions: GET /actuator/partitions lists them,
+ * POST /actuator/partitions/{name} detaches a past month so it can be archived
+ * (with {@code {"force": true}} for the legacy partition or a current month).
+ * Not exposed over the web by default, see management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "partitions")
+@RequiredArgsConstructor
+public class PartitionsEndpoint {
+
+    private final PartitionManager partitionManager;
+
+    @ReadOperation
+    public Mono<List<PartitionManager.PartitionInfo>> partitions() {
+        return partitionManager.describe().collectList();
+    }
+
+    @WriteOperation
+    public Mono<Map<String, Object>> detach(@Selector String name, @Nullable Boolean force) {
+        return partitionManager.detach(name, Boolean.TRUE.equals(force))
+                .thenReturn(Map.<String, Object>of("detached", name))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(Map.<String, Object>of("error", e.getMessage())));
+    }
+}
@@ -2,40 +2,108 @@ package com.example.chess.app.config;
 
 import io.r2dbc.pool.ConnectionPool;
 import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.postgresql.PostgresqlConnectionFactoryProvider;
 import io.r2dbc.spi.ConnectionFactory;
-import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
-import org.springframework.data.r2dbc.core.DefaultReactiveDataAccessStrategy;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
-import org.springframework.data.r2dbc.dialect.PostgresDialect;
-import org.springframework.data.r2dbc.dialect.R2dbcDialect;
 import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.StringUtils;
 
 @Configuration
 @EnableR2dbcRepositories(basePackages = "com.chess.positionsearch.repository")
+@EnableConfigurationProperties(R2dbcPoolProperties.class)
 public class PostgresConfig extends AbstractR2dbcConfiguration {
 
     @Value("${spring.r2dbc.url}")
     private String dbUrl;
 
+    private final R2dbcPoolProperties poolProperties;
+
+    public PostgresConfig(R2dbcPoolProperties poolProperties) {
+        this.poolProperties = poolProperties;
+    }
+
+    /**
+     * Pool for GraphQL reads; the default for everything not explicitly wired to ingest
+     */
     @Bean
+    @Primary
     @Override
     public ConnectionFactory connectionFactory() {
-        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(dbUrl).build();
-        ConnectionPoolConfiguration configuration = ConnectionPoolConfiguration.builder(connectionFactory)
-                .name("chess-app")
-                .build(); // add more later based on requirements
+        return createPool("chess-query", poolProperties.getQuery());
+    }
 
-        return new ConnectionPool(configuration);
+    /**
+     * Separate pool for Kafka batch writes, so ingest can never take the query pool's connections
+     */
+    @Bean
+    public ConnectionFactory ingestConnectionFactory() {
+        return createPool("chess-ingest", poolProperties.getIngest());
+    }
+
+    @Bean
+    @Primary
+    @Override
+    public DatabaseClient databaseClient() {
+        return super.databaseClient();
     }
 
     @Bean
     public R2dbcEntityTemplate r2dbcEntityTemplate(ConnectionFactory connectionFactory) {
         return new R2dbcEntityTemplate(connectionFactory);
     }
+
+    @Bean
+    @Primary
+    public ReactiveTransactionManager transactionManager(ConnectionFactory connectionFactory) {
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+
+    @Bean
+    public DatabaseClient ingestDatabaseClient(@Qualifier("ingestConnectionFactory") ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    @Bean
+    public ReactiveTransactionManager ingestTransactionManager(
+            @Qualifier("ingestConnectionFactory") ConnectionFactory connectionFactory) {
+        return new R2dbcTransactionManager(connectionFactory);
+    }
+
+    @Bean
+    public TransactionalOperator ingestTransactionalOperator(
+            @Qualifier("ingestTransactionManager") ReactiveTransactionManager transactionManager) {
+        return TransactionalOperator.create(transactionManager);
+    }
+
+    private ConnectionFactory createPool(String name, R2dbcPoolProperties.Pool pool) {
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(dbUrl)
+                .configure(options -> options.option(PostgresqlConnectionFactoryProvider.PREPARED_STATEMENT_CACHE_QUERIES,
+                        pool.getPreparedStatementCacheSize()))
+                .build();
+
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(connectionFactory)
+                .name(name)
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .validationDepth(pool.getValidationDepth());
+        if (pool.getMaxAcquireTime() != null) configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        if (pool.getMaxIdleTime() != null) configuration.maxIdleTime(pool.getMaxIdleTime());
+        if (pool.getMaxLifeTime() != null) configuration.maxLifeTime(pool.getMaxLifeTime());
+        if (StringUtils.hasText(pool.getValidationQuery())) configuration.validationQuery(pool.getValidationQuery());
+
+        // Actuator publishes r2dbc.pool.acquired/pending/idle/allocated{name=<bean name>} for each pool
+        return new ConnectionPool(configuration.build());
+    }
 }
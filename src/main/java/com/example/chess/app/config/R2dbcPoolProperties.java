@@ -0,0 +1,45 @@
+package com.example.chess.app.config;
+
+import io.r2dbc.spi.ValidationDepth;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the two connection pools: {@code query} serves GraphQL reads and
+ * {@code ingest} the Kafka batch writes, so a replayed backlog can only exhaust its
+ * own connections. Durations left unset mean "no limit".
+ */
+@Data
+@ConfigurationProperties(prefix = "chess.r2dbc.pool")
+public class R2dbcPoolProperties {
+
+    private Pool query = new Pool();
+
+    private Pool ingest = new Pool();
+
+    @Data
+    public static class Pool {
+
+        private int initialSize = 2;
+
+        private int maxSize = 10;
+
+        // How long a caller waits for a free connection before failing
+        private Duration maxAcquireTime;
+
+        private Duration maxIdleTime = Duration.ofMinutes(30);
+
+        private Duration maxLifeTime;
+
+        // LOCAL checks the connection state, REMOTE round-trips to the server
+        private ValidationDepth validationDepth = ValidationDepth.LOCAL;
+
+        // Optional query run on acquire instead of validationDepth
+        private String validationQuery;
+
+        // Prepared statements cached per connection: -1 unbounded, 0 disabled
+        private int preparedStatementCacheSize = -1;
+    }
+}
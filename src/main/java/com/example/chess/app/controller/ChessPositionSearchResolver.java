@@ -1,23 +1,58 @@
 package com.example.chess.app.controller;
 
+import com.example.chess.app.dto.request.ExactPositionResult;
+import com.example.chess.app.dto.request.FenError;
+import com.example.chess.app.dto.request.InvalidRequestException;
+import com.example.chess.app.dto.request.SimilarityBatchResult;
+import com.example.chess.app.dto.request.SimilarityRanking;
 import com.example.chess.app.dto.request.SimilarityRequest;
 import com.example.chess.app.dto.request.SimilarityResult;
+import com.example.chess.app.model.Game;
+import com.example.chess.app.model.Position;
 import com.example.chess.app.service.PositionMatchingService;
 import com.example.chess.app.service.PositionService;
+import com.example.chess.app.service.SimilarityRequestCoalescer;
+import com.example.chess.app.service.SimilarityResultCache;
+import com.example.chess.app.util.FenParseException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.stereotype.Controller;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Controller
 public class ChessPositionSearchResolver {
 
     private final PositionMatchingService matchingService;
     private final PositionService positionService;
+    private final SimilarityResultCache resultCache;
+    private final SimilarityRequestCoalescer coalescer;
+    private final int maxBatchSize;
+    private final int maxLimit;
 
-    public ChessPositionSearchResolver(PositionMatchingService matchingService, PositionService positionService) {
+    public ChessPositionSearchResolver(PositionMatchingService matchingService, PositionService positionService,
+                                       SimilarityResultCache resultCache, SimilarityRequestCoalescer coalescer,
+                                       @Value("${chess.similarity.batch.max-size:100}") int maxBatchSize,
+                                       @Value("${chess.similarity.max-limit:1000}") int maxLimit) {
         this.matchingService = matchingService;
         this.positionService = positionService;
+        this.resultCache = resultCache;
+        this.coalescer = coalescer;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLimit = maxLimit;
     }
 
     @QueryMapping
@@ -25,11 +60,127 @@ public class ChessPositionSearchResolver {
             @Argument String fen,
             @Argument(name = "request") SimilarityRequest requestDTO) {
 
+        return resultCache.get(fen, requestDTO, () -> coalescer.coalesce(fen, requestDTO,
+                () -> positionService.convertFenToPosition(fen)
+                        .flatMapMany(position -> {
+                            requestDTO.toDomain(maxLimit);
+                            return matchingService.findSimilarPositions(position, requestDTO);
+                        })));
+    }
+
+    /**
+     * Similarity search for many FENs in one request, e.g. every move of a game. The
+     * searches share their SQL round trips and the nested positions and games of all
+     * results are hydrated together. Results are not cached.
+     *
+     * A FEN that fails to parse gets an error entry instead of failing the batch; a
+     * batch over {@code chess.similarity.batch.max-size} FENs is rejected outright.
+     */
+    @QueryMapping
+    public Mono<List<SimilarityBatchResult>> findSimilarPositionsBatch(
+            @Argument List<String> fens,
+            @Argument(name = "request") SimilarityRequest requestDTO) {
+
+        if (fens.size() > maxBatchSize) {
+            throw new InvalidRequestException("fens",
+                    "A batch search takes at most " + maxBatchSize + " FENs, got " + fens.size());
+        }
+        requestDTO.toDomain(maxLimit);
+        return Flux.fromIterable(fens)
+                .concatMap(fen -> positionService.convertFenToPosition(fen)
+                        .map(position -> new ParsedFen(position, null))
+                        .onErrorResume(FenParseException.class, e -> Mono.just(new ParsedFen(null, e))))
+                .collectList()
+                .flatMap(parsed -> matchingService.findSimilarPositionsBatch(parsed.stream()
+                                .map(ParsedFen::position)
+                                .filter(Objects::nonNull)
+                                .toList(), requestDTO)
+                        .map(results -> {
+                            // Results are in the order of the parsed FENs
+                            Iterator<List<SimilarityResult>> next = results.iterator();
+                            return IntStream.range(0, fens.size())
+                                    .mapToObj(i -> parsed.get(i).error() == null
+                                            ? new SimilarityBatchResult(fens.get(i), next.next(), null)
+                                            : new SimilarityBatchResult(fens.get(i), List.of(),
+                                                    FenError.of(parsed.get(i).error())))
+                                    .toList();
+                        }));
+    }
+
+    /**
+     * Streamed variant of findSimilarPositionsByFen, over SSE or WebSocket: an early
+     * ranking from the cheapest candidates, then improved ones, the last marked complete.
+     * Bypasses the result cache, which only holds finished searches.
+     */
+    @SubscriptionMapping
+    public Flux<SimilarityRanking> similarPositionsByFen(
+            @Argument String fen,
+            @Argument(name = "request") SimilarityRequest requestDTO) {
+
         return positionService.convertFenToPosition(fen)
                 .flatMapMany(position -> {
-                    requestDTO.toDomain();
-                    return matchingService.findSimilarPositions(position, requestDTO);
+                    requestDTO.toDomain(maxLimit);
+                    return matchingService.streamSimilarPositions(position, requestDTO);
+                });
+    }
+
+    /**
+     * Exact-position lookup by Zobrist hash, the cheap path before a fuzzy search.
+     * The limit is bounded like a similarity search's.
+     */
+    @QueryMapping
+    public Mono<ExactPositionResult> findGamesByExactPosition(@Argument String fen, @Argument Integer limit) {
+        int checkedLimit = SimilarityRequest.checkLimit(limit == null ? 20 : limit, maxLimit);
+        return positionService.convertFenToPosition(fen)
+                .flatMap(position -> matchingService.findExactPosition(position, checkedLimit));
+    }
+
+    /**
+     * Loads SimilarityResult.position for every result in the response with one query.
+     * Only invoked when the client selects the field.
+     */
+    @BatchMapping(typeName = "SimilarityResult")
+    public Mono<Map<SimilarityResult, Position>> position(List<SimilarityResult> results) {
+        Set<UUID> ids = results.stream()
+                .map(SimilarityResult::getPositionId)
+                .collect(Collectors.toSet());
+
+        return matchingService.findPositionsByIds(ids)
+                .map(positions -> {
+                    Map<SimilarityResult, Position> byResult = new HashMap<>();
+                    for (SimilarityResult result : results) {
+                        Position position = positions.get(result.getPositionId());
+                        if (position != null) {
+                            byResult.put(result, position);
+                        }
+                    }
+                    return byResult;
+                });
+    }
+
+    /**
+     * Loads SimilarityResult.game for every result in the response with one query.
+     * Only invoked when the client selects the field.
+     */
+    @BatchMapping(typeName = "SimilarityResult")
+    public Mono<Map<SimilarityResult, Game>> game(List<SimilarityResult> results) {
+        Set<String> ids = results.stream()
+                .map(SimilarityResult::getGameId)
+                .collect(Collectors.toSet());
+
+        return matchingService.findGamesByIds(ids)
+                .map(games -> {
+                    Map<SimilarityResult, Game> byResult = new HashMap<>();
+                    for (SimilarityResult result : results) {
+                        Game game = games.get(result.getGameId());
+                        if (game != null) {
+                            byResult.put(result, game);
+                        }
+                    }
+                    return byResult;
                 });
     }
 
-}
\ No newline at end of file
+    private record ParsedFen(Position position, FenParseException error) {
+    }
+}
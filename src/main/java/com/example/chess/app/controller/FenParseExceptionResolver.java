@@ -0,0 +1,31 @@
+package com.example.chess.app.controller;
+
+import com.example.chess.app.util.FenParseException;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports malformed FEN input as a BAD_REQUEST GraphQL error carrying the parse
+ * error code and character index in its extensions.
+ */
+@Component
+public class FenParseExceptionResolver extends DataFetcherExceptionResolverAdapter {
+
+    @Override
+    protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
+        if (ex instanceof FenParseException fenError) {
+            return GraphqlErrorBuilder.newError(env)
+                    .errorType(ErrorType.BAD_REQUEST)
+                    .message(fenError.getMessage())
+                    .extensions(Map.of("code", fenError.getError().name(), "index", fenError.getIndex()))
+                    .build();
+        }
+        return null;
+    }
+}
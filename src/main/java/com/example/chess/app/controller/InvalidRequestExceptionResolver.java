@@ -0,0 +1,31 @@
+package com.example.chess.app.controller;
+
+import com.example.chess.app.dto.request.InvalidRequestException;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports invalid request arguments as a BAD_REQUEST GraphQL error naming the
+ * argument in its extensions.
+ */
+@Component
+public class InvalidRequestExceptionResolver extends DataFetcherExceptionResolverAdapter {
+
+    @Override
+    protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
+        if (ex instanceof InvalidRequestException invalid) {
+            return GraphqlErrorBuilder.newError(env)
+                    .errorType(ErrorType.BAD_REQUEST)
+                    .message(invalid.getMessage())
+                    .extensions(Map.of("argument", invalid.getArgument()))
+                    .build();
+        }
+        return null;
+    }
+}
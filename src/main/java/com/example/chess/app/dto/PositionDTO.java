@@ -14,7 +14,7 @@ public class PositionDTO {
     private Integer fullmoveNumber;
     private String fen;
 
-    // pieces
+    // pieces - square lists as published on the topic, packed into bitboards on ingest
     private Long whitePawns;
     private List<Integer> whiteKnights;
     private List<Integer> whiteBishops;
@@ -0,0 +1,19 @@
+package com.example.chess.app.dto.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Games reaching exactly the same position (same Zobrist hash), with result counts
+ * over all of them and the first occurrence in up to {@code limit} games.
+ */
+@Data
+public class ExactPositionResult {
+    private Long zobristHash;
+    private Integer totalGames;
+    private Integer whiteWins;
+    private Integer draws;
+    private Integer blackWins;
+    private List<SimilarityResult> games;
+}
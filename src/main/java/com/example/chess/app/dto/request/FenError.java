@@ -0,0 +1,22 @@
+package com.example.chess.app.dto.request;
+
+import com.example.chess.app.util.FenParseException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Why one FEN of a batch search could not be parsed, as in the single-search error extensions
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FenError {
+    private String code;
+    private int index;
+    private String message;
+
+    public static FenError of(FenParseException e) {
+        return new FenError(e.getError().name(), e.getIndex(), e.getMessage());
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.chess.app.dto.request;
+
+import lombok.Getter;
+
+/**
+ * Thrown for a request argument outside what the API accepts, naming the argument.
+ */
+@Getter
+public class InvalidRequestException extends IllegalArgumentException {
+
+    private final String argument;
+
+    public InvalidRequestException(String argument, String message) {
+        super(message);
+        this.argument = argument;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.chess.app.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Similarity results for one FEN of a batch search, or why the FEN was rejected
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarityBatchResult {
+    private String fen;
+    private List<SimilarityResult> results;
+    // Set, with no results, when the FEN could not be parsed
+    private FenError error;
+}
@@ -0,0 +1,22 @@
+package com.example.chess.app.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One update of a streamed similarity search: the best {@code limit} games found so
+ * far, best first. Every update replaces the previous one; the last has
+ * {@code complete} set and equals what the non-streaming query returns.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarityRanking {
+    private List<SimilarityResult> results;
+    // Widest material distance searched so far; null for the in-memory engine
+    private Integer materialDistance;
+    private boolean complete;
+}
@@ -12,6 +12,9 @@ import java.util.stream.Collectors;
 @Data
 public class SimilarityRequest {
 
+    // Largest limit accepted when the caller has no configured maximum
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
     // The color (white or black) for which user wants to match piece structures
     private Color color;
 
@@ -32,6 +35,26 @@ public class SimilarityRequest {
     private Set<String> pieceTypes;
 
     public void toDomain() {
+        toDomain(DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Validate the request and resolve the selected pieces to piece type names.
+     * Throws InvalidRequestException for a limit outside 1..{@code maxLimit} or a
+     * missing or inverted Elo range.
+     */
+    public void toDomain(int maxLimit) {
+        checkLimit(limit, maxLimit);
+        if (minElo == null) {
+            throw new InvalidRequestException("minElo", "minElo must not be null");
+        }
+        if (maxElo == null) {
+            throw new InvalidRequestException("maxElo", "maxElo must not be null");
+        }
+        if (minElo > maxElo) {
+            throw new InvalidRequestException("minElo", "minElo " + minElo + " is above maxElo " + maxElo);
+        }
+
         Set<String> pieceTypes = selectedPieces.stream()
                 .map(piece -> color.name().toLowerCase() + piece.name().charAt(0) + piece.name().substring(1).toLowerCase())
                 .collect(Collectors.toSet());
@@ -39,4 +62,15 @@ public class SimilarityRequest {
         this.setPieceTypes(pieceTypes);
 
     }
+
+    /**
+     * The limit of any search, which sizes its result buffers and SQL LIMIT. Throws
+     * InvalidRequestException unless it is within 1..{@code maxLimit}.
+     */
+    public static int checkLimit(Integer limit, int maxLimit) {
+        if (limit == null || limit < 1 || limit > maxLimit) {
+            throw new InvalidRequestException("limit", "limit must be between 1 and " + maxLimit + ", got " + limit);
+        }
+        return limit;
+    }
 }
\ No newline at end of file
@@ -1,13 +1,12 @@
 package com.example.chess.app.dto.request;
 
-import com.example.chess.app.model.Game;
-import com.example.chess.app.model.Position;
 import lombok.Data;
 
 import java.util.UUID;
 
 /**
- * Result object for position similarity search
+ * Result object for position similarity search. The nested position and game are
+ * resolved in batches from the ids by the GraphQL layer.
  */
 @Data
 public class SimilarityResult {
@@ -15,8 +14,4 @@ public class SimilarityResult {
     private String gameId;
     private Integer moveNumber;
     private Double similarityScore;
-
-    // Could include the full position data or just a link to it
-    private Position position;
-    private Game game;
 }
@@ -0,0 +1,169 @@
+package com.example.chess.app.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primitive, mutable board representation: one bitboard per piece type plus the
+ * remaining FEN state. Squares are numbered 0 = a1 .. 63 = h8. Instances can be
+ * cleared and reused so that parsing does not allocate.
+ */
+public final class Board {
+
+    // Piece indexes into pieces(): pawn, knight, bishop, rook, queen, king for white, then black
+    public static final int WHITE_PAWN = 0;
+    public static final int WHITE_KNIGHT = 1;
+    public static final int WHITE_BISHOP = 2;
+    public static final int WHITE_ROOK = 3;
+    public static final int WHITE_QUEEN = 4;
+    public static final int WHITE_KING = 5;
+    public static final int BLACK_PAWN = 6;
+    public static final int BLACK_KNIGHT = 7;
+    public static final int BLACK_BISHOP = 8;
+    public static final int BLACK_ROOK = 9;
+    public static final int BLACK_QUEEN = 10;
+    public static final int BLACK_KING = 11;
+    public static final int PIECE_TYPES = 12;
+
+    // Piece type names as used in SimilarityRequest.pieceTypes, indexed like the constants above
+    public static final List<String> PIECE_NAMES = List.of(
+            "whitePawn", "whiteKnight", "whiteBishop", "whiteRook", "whiteQueen", "whiteKing",
+            "blackPawn", "blackKnight", "blackBishop", "blackRook", "blackQueen", "blackKing");
+
+    // Castling right bits, as stored in positions.castling_rights
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    public static final int NO_SQUARE = -1;
+
+    private final long[] pieces = new long[PIECE_TYPES];
+    private boolean whiteToMove = true;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    private int halfMoveClock;
+    private int fullMoveNumber = 1;
+
+    public void clear() {
+        Arrays.fill(pieces, 0L);
+        whiteToMove = true;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfMoveClock = 0;
+        fullMoveNumber = 1;
+    }
+
+    public long pieces(int piece) {
+        return pieces[piece];
+    }
+
+    public void setPieces(int piece, long bitboard) {
+        pieces[piece] = bitboard;
+    }
+
+    public void addPiece(int piece, int square) {
+        pieces[piece] |= 1L << square;
+    }
+
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    public void setWhiteToMove(boolean whiteToMove) {
+        this.whiteToMove = whiteToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        this.castlingRights = castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    public int getHalfMoveClock() {
+        return halfMoveClock;
+    }
+
+    public void setHalfMoveClock(int halfMoveClock) {
+        this.halfMoveClock = halfMoveClock;
+    }
+
+    public int getFullMoveNumber() {
+        return fullMoveNumber;
+    }
+
+    public void setFullMoveNumber(int fullMoveNumber) {
+        this.fullMoveNumber = fullMoveNumber;
+    }
+
+    /**
+     * Copy pieces and state onto a Position entity. Kings become square indexes (null
+     * when absent) and a missing en passant square is stored as 0, as in the table.
+     */
+    public void copyTo(Position position) {
+        position.setWhitePawns(pieces[WHITE_PAWN]);
+        position.setWhiteKnights(pieces[WHITE_KNIGHT]);
+        position.setWhiteBishops(pieces[WHITE_BISHOP]);
+        position.setWhiteRooks(pieces[WHITE_ROOK]);
+        position.setWhiteQueens(pieces[WHITE_QUEEN]);
+        position.setWhiteKing(squareOf(pieces[WHITE_KING]));
+        position.setBlackPawns(pieces[BLACK_PAWN]);
+        position.setBlackKnights(pieces[BLACK_KNIGHT]);
+        position.setBlackBishops(pieces[BLACK_BISHOP]);
+        position.setBlackRooks(pieces[BLACK_ROOK]);
+        position.setBlackQueens(pieces[BLACK_QUEEN]);
+        position.setBlackKing(squareOf(pieces[BLACK_KING]));
+
+        position.setSideToMove(whiteToMove ? "w" : "b");
+        position.setCastlingRights(castlingRights);
+        position.setEnPassantSquare(enPassantSquare == NO_SQUARE ? 0 : enPassantSquare);
+        position.setHalfMoveClock(halfMoveClock);
+        position.setFullMoveNumber(fullMoveNumber);
+    }
+
+    /**
+     * Build a board from a stored Position, treating missing values as empty
+     */
+    public static Board from(Position position) {
+        Board board = new Board();
+        board.pieces[WHITE_PAWN] = orZero(position.getWhitePawns());
+        board.pieces[WHITE_KNIGHT] = orZero(position.getWhiteKnights());
+        board.pieces[WHITE_BISHOP] = orZero(position.getWhiteBishops());
+        board.pieces[WHITE_ROOK] = orZero(position.getWhiteRooks());
+        board.pieces[WHITE_QUEEN] = orZero(position.getWhiteQueens());
+        board.pieces[WHITE_KING] = position.getWhiteKing() == null ? 0L : 1L << position.getWhiteKing();
+        board.pieces[BLACK_PAWN] = orZero(position.getBlackPawns());
+        board.pieces[BLACK_KNIGHT] = orZero(position.getBlackKnights());
+        board.pieces[BLACK_BISHOP] = orZero(position.getBlackBishops());
+        board.pieces[BLACK_ROOK] = orZero(position.getBlackRooks());
+        board.pieces[BLACK_QUEEN] = orZero(position.getBlackQueens());
+        board.pieces[BLACK_KING] = position.getBlackKing() == null ? 0L : 1L << position.getBlackKing();
+
+        String sideToMove = position.getSideToMove();
+        board.whiteToMove = !("b".equalsIgnoreCase(sideToMove) || "black".equalsIgnoreCase(sideToMove));
+        board.castlingRights = position.getCastlingRights() == null ? 0 : position.getCastlingRights() & 15;
+        Integer enPassantSquare = position.getEnPassantSquare();
+        board.enPassantSquare = enPassantSquare == null || enPassantSquare == 0 ? NO_SQUARE : enPassantSquare;
+        board.halfMoveClock = position.getHalfMoveClock() == null ? 0 : position.getHalfMoveClock();
+        board.fullMoveNumber = position.getFullMoveNumber() == null ? 1 : position.getFullMoveNumber();
+        return board;
+    }
+
+    private static Integer squareOf(long bitboard) {
+        return bitboard == 0 ? null : Long.numberOfTrailingZeros(bitboard);
+    }
+
+    private static long orZero(Long bitboard) {
+        return bitboard == null ? 0L : bitboard;
+    }
+}
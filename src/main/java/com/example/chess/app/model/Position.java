@@ -9,7 +9,6 @@ import org.springframework.data.annotation.Transient;
 import org.springframework.data.domain.Persistable;
 import org.springframework.data.relational.core.mapping.Table;
 
-import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -27,18 +26,17 @@ public class Position implements Persistable<UUID> {
     private Integer whiteKing;
     private Integer blackKing;
 
-    // Multi-piece locations as arrays
-    private List<Integer> whiteQueens;
-    private List<Integer> whiteRooks;
-    private List<Integer> whiteBishops;
-    private List<Integer> whiteKnights;
+    // Multi-piece locations as bitboards
+    private Long whiteQueens;
+    private Long whiteRooks;
+    private Long whiteBishops;
+    private Long whiteKnights;
 
-    private List<Integer> blackQueens;
-    private List<Integer> blackRooks;
-    private List<Integer> blackBishops;
-    private List<Integer> blackKnights;
+    private Long blackQueens;
+    private Long blackRooks;
+    private Long blackBishops;
+    private Long blackKnights;
 
-    // Bitboards for pawns
     private Long whitePawns;
     private Long blackPawns;
 
@@ -50,6 +48,17 @@ public class Position implements Persistable<UUID> {
     private Integer fullMoveNumber;
     private String fen;
 
+    // Zobrist hash of pieces, side to move, castling and en passant for exact lookups
+    private Long zobristHash;
+
+    // Copied from the game at ingest so the similarity prefilter needs no join
+    private Integer minElo;
+    private Integer maxElo;
+    private String gameType;
+
+    // Packed piece counts (see MaterialSignature), the bucket the similarity search starts from
+    private Integer materialSignature;
+
     @Transient
     private boolean isNew = false;
 
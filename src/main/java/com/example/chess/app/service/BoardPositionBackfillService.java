@@ -0,0 +1,189 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.util.MaterialSignature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the boards of positions written before board_positions existed. Starts once
+ * ZobristBackfillService has hashed every position, then visits positions in keyset
+ * batches and inserts each board unless its hash is already stored. The store only
+ * counts as complete once a final check finds no position without a stored board;
+ * until then searches score positions directly.
+ *
+ * A passing check is recorded in backfill_markers with the time the run started, so
+ * later startups only visit and check the positions ingested since. A failed check is
+ * retried on {@code chess.db.board-positions.recheck-cron} instead of waiting for the
+ * next restart.
+ */
+@Service
+@Slf4j
+public class BoardPositionBackfillService {
+
+    private static final int BATCH_SIZE = 10000;
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    static final String MARKER = "board_positions";
+
+    private final DatabaseClient databaseClient;
+    private final ZobristBackfillService zobristBackfill;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile boolean complete = false;
+
+    public BoardPositionBackfillService(@Qualifier("ingestDatabaseClient") DatabaseClient databaseClient,
+                                        ZobristBackfillService zobristBackfill) {
+        this.databaseClient = databaseClient;
+        this.zobristBackfill = zobristBackfill;
+    }
+
+    /**
+     * True once every stored position has its board in board_positions. Ingest keeps
+     * it that way from then on.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        run();
+    }
+
+    @Scheduled(cron = "${chess.db.board-positions.recheck-cron:0 30 * * * *}", zone = "UTC")
+    public void recheck() {
+        if (!complete) {
+            run();
+        }
+    }
+
+    private void run() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        AtomicLong batches = new AtomicLong();
+        // Positions without a hash have no board to store, so wait for all of them to get one
+        zobristBackfill.completion()
+                .then(startRun())
+                .flatMap(run -> Flux.defer(() -> backfillBatch(run.since(), FIRST_ID)
+                                .expand(lastId -> backfillBatch(run.since(), lastId)))
+                        .doOnNext(lastId -> batches.incrementAndGet())
+                        .then(allBoardsStored(run.since()))
+                        .flatMap(stored -> stored ? markCovered(run.startedAt()).thenReturn(true) : Mono.just(false))
+                        .doOnSuccess(stored -> log.info("Backfilled board positions ingested since {} in {} batches",
+                                run.since(), batches.get())))
+                .doOnSuccess(stored -> {
+                    if (stored) {
+                        complete = true;
+                    } else {
+                        log.warn("Some positions still have no stored board; board positions stay unused until a recheck passes");
+                    }
+                })
+                .doOnError(e -> log.error("Error backfilling board positions:", e))
+                .doFinally(signal -> running.set(false))
+                .subscribe();
+    }
+
+    /**
+     * Where this run starts: after the ingest time the last passing check covered, or
+     * from the beginning (the legacy partition's rows are stamped with the epoch)
+     */
+    private Mono<Run> startRun() {
+        return databaseClient.sql("""
+                SELECT now() AS started_at,
+                       (SELECT covered_until FROM backfill_markers WHERE name = :name) AS covered_until
+                """)
+                .bind("name", MARKER)
+                .map(row -> {
+                    Instant coveredUntil = row.get("covered_until", Instant.class);
+                    return new Run(coveredUntil != null ? coveredUntil : Instant.EPOCH,
+                            row.get("started_at", Instant.class));
+                })
+                .one();
+    }
+
+    /**
+     * Store the missing boards of the next batch of positions ingested since
+     * {@code since} after {@code after} and return the last id visited, or empty when
+     * there is nothing left
+     */
+    private Mono<UUID> backfillBatch(Instant since, UUID after) {
+        // material_signature is computed rather than copied, it may not be backfilled yet
+        return databaseClient.sql("""
+                WITH batch AS (
+                    SELECT id
+                    FROM positions
+                    WHERE ingested_at >= :since
+                      AND id > :after
+                    ORDER BY id
+                    LIMIT :batchSize
+                ), inserted AS (
+                    INSERT INTO board_positions (zobrist_hash, white_king, black_king,
+                        white_queens, white_rooks, white_bishops, white_knights, white_pawns,
+                        black_queens, black_rooks, black_bishops, black_knights, black_pawns,
+                        material_signature)
+                    SELECT DISTINCT ON (p.zobrist_hash) p.zobrist_hash, p.white_king, p.black_king,
+                        p.white_queens, p.white_rooks, p.white_bishops, p.white_knights, p.white_pawns,
+                        p.black_queens, p.black_rooks, p.black_bishops, p.black_knights, p.black_pawns,
+                        %s
+                    FROM positions p
+                    JOIN batch b ON b.id = p.id
+                    WHERE p.ingested_at >= :since
+                      AND p.zobrist_hash IS NOT NULL
+                      AND NOT EXISTS (SELECT 1 FROM board_positions bp WHERE bp.zobrist_hash = p.zobrist_hash)
+                    ORDER BY p.zobrist_hash
+                    ON CONFLICT (zobrist_hash) DO NOTHING
+                )
+                SELECT id FROM batch ORDER BY id DESC LIMIT 1
+                """.formatted(MaterialSignature.SQL))
+                .bind("since", since)
+                .bind("after", after)
+                .bind("batchSize", BATCH_SIZE)
+                .map(row -> row.get("id", UUID.class))
+                .one();
+    }
+
+    // Ingest stores the board in the same transaction as the position, so once true this stays true
+    private Mono<Boolean> allBoardsStored(Instant since) {
+        return databaseClient.sql("""
+                SELECT NOT EXISTS (
+                    SELECT 1 FROM positions p
+                    WHERE p.ingested_at >= :since
+                      AND (p.zobrist_hash IS NULL
+                           OR NOT EXISTS (SELECT 1 FROM board_positions b WHERE b.zobrist_hash = p.zobrist_hash))
+                ) AS stored
+                """)
+                .bind("since", since)
+                .map(row -> row.get("stored", Boolean.class))
+                .one();
+    }
+
+    // Positions ingested before the run started are covered; later ones are checked next time
+    private Mono<Void> markCovered(Instant startedAt) {
+        return databaseClient.sql("""
+                INSERT INTO backfill_markers (name, covered_until)
+                VALUES (:name, :coveredUntil)
+                ON CONFLICT (name) DO UPDATE SET covered_until = EXCLUDED.covered_until
+                """)
+                .bind("name", MARKER)
+                .bind("coveredUntil", startedAt)
+                .then();
+    }
+
+    private record Run(Instant since, Instant startedAt) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.chess.app.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Fixed-capacity min-heap of (row, score) pairs on primitive arrays that keeps the
+ * {@code capacity} highest scores offered to it, at most one per key. Not
+ * thread-safe; one per query.
+ */
+final class BoundedScoreHeap {
+
+    private final int[] rows;
+    private final double[] scores;
+    private final String[] keys;
+    // Heap index of every key held, kept in step by swap()
+    private final Map<String, Integer> indexes;
+    private int size;
+
+    BoundedScoreHeap(int capacity) {
+        this.rows = new int[capacity];
+        this.scores = new double[capacity];
+        this.keys = new String[capacity];
+        this.indexes = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Offer a row, evicting the current minimum when full. A key already held keeps
+     * whichever of its rows scores higher. Ties keep the earlier row.
+     */
+    void offer(int row, double score, String key) {
+        Integer held = indexes.get(key);
+        if (held != null) {
+            if (score > scores[held]) {
+                rows[held] = row;
+                scores[held] = score;
+                siftDown(held);
+            }
+        } else if (size < rows.length) {
+            set(size, row, score, key);
+            siftUp(size++);
+        } else if (rows.length > 0 && score > scores[0]) {
+            indexes.remove(keys[0]);
+            set(0, row, score, key);
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Indexes into {@link #row(int)}/{@link #score(int)} ordered by descending score,
+     * then by key like the SQL path.
+     */
+    int[] descendingOrder() {
+        return IntStream.range(0, size)
+                .boxed()
+                .sorted((a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : keys[a].compareTo(keys[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    int row(int index) {
+        return rows[index];
+    }
+
+    double score(int index) {
+        return scores[index];
+    }
+
+    private void set(int index, int row, double score, String key) {
+        rows[index] = row;
+        scores[index] = score;
+        keys[index] = key;
+        indexes.put(key, index);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) break;
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) break;
+            int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[index] <= scores[smallest]) break;
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+        String key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        indexes.put(keys[i], i);
+        indexes.put(keys[j], j);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chess.app.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.kafka.sender.KafkaSender;
+import reactor.kafka.sender.SenderRecord;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Moves records that can never be ingested (a message that is not valid JSON, a
+ * value too long for its column, a message that maps to invalid positions) to a
+ * dead-letter topic, so they stop blocking their partition. The original topic,
+ * partition, offset and the error are kept in headers for inspection and replay.
+ */
+@Service
+@Slf4j
+public class DeadLetterPublisher {
+
+    private final KafkaSender<String, String> sender;
+    private final IngestMetrics ingestMetrics;
+    private final String topic;
+
+    public DeadLetterPublisher(KafkaSender<String, String> deadLetterSender, IngestMetrics ingestMetrics,
+                               @Value("${kafka.topics.chess-games-dead-letter}") String topic) {
+        this.sender = deadLetterSender;
+        this.ingestMetrics = ingestMetrics;
+        this.topic = topic;
+    }
+
+    public Mono<Void> publish(ReceiverRecord<String, String> record, Throwable error) {
+        ProducerRecord<String, String> deadLetter = new ProducerRecord<>(topic, record.key(), record.value());
+        header(deadLetter, "x-original-topic", record.topic());
+        header(deadLetter, "x-original-partition", String.valueOf(record.partition()));
+        header(deadLetter, "x-original-offset", String.valueOf(record.offset()));
+        header(deadLetter, "x-exception", error.getClass().getName());
+        header(deadLetter, "x-exception-message", String.valueOf(error.getMessage()));
+
+        return sender.send(Mono.just(SenderRecord.create(deadLetter, null)))
+                .then()
+                .doOnSuccess(v -> {
+                    ingestMetrics.deadLettered();
+                    log.warn("Moved record {}-{}@{} to {}: {}", record.topic(), record.partition(), record.offset(),
+                            topic, error.getMessage());
+                });
+    }
+
+    private static void header(ProducerRecord<String, String> record, String name, String value) {
+        record.headers().add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
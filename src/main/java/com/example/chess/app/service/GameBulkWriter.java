@@ -0,0 +1,186 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.model.Game;
+import com.example.chess.app.model.Position;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Writes games and positions with multi-row INSERT statements instead of one
+ * round trip per entity. A whole batch is written in a single transaction,
+ * split into chunks of {@code chess.ingest.chunk-size} rows per statement. Writes use
+ * the dedicated ingest connection pool.
+ */
+@Service
+@Slf4j
+public class GameBulkWriter {
+
+    // Postgres caps the number of bind parameters in one statement
+    private static final int MAX_BIND_PARAMETERS = 65535;
+
+    private static final List<Column<Game>> GAME_COLUMNS = List.of(
+            new Column<>("id", String.class, Game::getId),
+            new Column<>("result", String.class, Game::getResult),
+            new Column<>("white_elo", Integer.class, Game::getWhiteElo),
+            new Column<>("black_elo", Integer.class, Game::getBlackElo),
+            new Column<>("game_type", String.class, Game::getGameType),
+            new Column<>("date", String.class, Game::getDate),
+            new Column<>("white_name", String.class, Game::getWhiteName),
+            new Column<>("black_name", String.class, Game::getBlackName),
+            new Column<>("eco", String.class, Game::getEco),
+            new Column<>("time_control", String.class, Game::getTimeControl),
+            new Column<>("site", String.class, Game::getSite),
+            new Column<>("opening", String.class, Game::getOpening),
+            new Column<>("pgn", String.class, Game::getPgn));
+
+    private static final List<Column<Position>> POSITION_COLUMNS = List.of(
+            new Column<>("id", UUID.class, Position::getId),
+            new Column<>("game_id", String.class, Position::getGameId),
+            new Column<>("move_number", Integer.class, Position::getMoveNumber),
+            new Column<>("white_king", Integer.class, Position::getWhiteKing),
+            new Column<>("black_king", Integer.class, Position::getBlackKing),
+            new Column<>("white_queens", Long.class, Position::getWhiteQueens),
+            new Column<>("white_rooks", Long.class, Position::getWhiteRooks),
+            new Column<>("white_bishops", Long.class, Position::getWhiteBishops),
+            new Column<>("white_knights", Long.class, Position::getWhiteKnights),
+            new Column<>("black_queens", Long.class, Position::getBlackQueens),
+            new Column<>("black_rooks", Long.class, Position::getBlackRooks),
+            new Column<>("black_bishops", Long.class, Position::getBlackBishops),
+            new Column<>("black_knights", Long.class, Position::getBlackKnights),
+            new Column<>("white_pawns", Long.class, Position::getWhitePawns),
+            new Column<>("black_pawns", Long.class, Position::getBlackPawns),
+            new Column<>("side_to_move", String.class, Position::getSideToMove),
+            new Column<>("castling_rights", Integer.class, Position::getCastlingRights),
+            new Column<>("en_passant_square", Integer.class, Position::getEnPassantSquare),
+            new Column<>("half_move_clock", Integer.class, Position::getHalfMoveClock),
+            new Column<>("full_move_number", Integer.class, Position::getFullMoveNumber),
+            new Column<>("fen", String.class, Position::getFen),
+            new Column<>("zobrist_hash", Long.class, Position::getZobristHash),
+            new Column<>("min_elo", Integer.class, Position::getMinElo),
+            new Column<>("max_elo", Integer.class, Position::getMaxElo),
+            new Column<>("game_type", String.class, Position::getGameType),
+            new Column<>("material_signature", Integer.class, Position::getMaterialSignature));
+
+    // Distinct boards, keyed by Zobrist hash; the first position seen for a hash wins
+    private static final List<Column<Position>> BOARD_COLUMNS = List.of(
+            new Column<>("zobrist_hash", Long.class, Position::getZobristHash),
+            new Column<>("white_king", Integer.class, Position::getWhiteKing),
+            new Column<>("black_king", Integer.class, Position::getBlackKing),
+            new Column<>("white_queens", Long.class, Position::getWhiteQueens),
+            new Column<>("white_rooks", Long.class, Position::getWhiteRooks),
+            new Column<>("white_bishops", Long.class, Position::getWhiteBishops),
+            new Column<>("white_knights", Long.class, Position::getWhiteKnights),
+            new Column<>("black_queens", Long.class, Position::getBlackQueens),
+            new Column<>("black_rooks", Long.class, Position::getBlackRooks),
+            new Column<>("black_bishops", Long.class, Position::getBlackBishops),
+            new Column<>("black_knights", Long.class, Position::getBlackKnights),
+            new Column<>("white_pawns", Long.class, Position::getWhitePawns),
+            new Column<>("black_pawns", Long.class, Position::getBlackPawns),
+            new Column<>("material_signature", Integer.class, Position::getMaterialSignature));
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final int chunkSize;
+
+    public GameBulkWriter(@Qualifier("ingestDatabaseClient") DatabaseClient databaseClient,
+                          @Qualifier("ingestTransactionalOperator") TransactionalOperator transactionalOperator,
+                          @Value("${chess.ingest.chunk-size:1000}") int chunkSize) {
+        this.databaseClient = databaseClient;
+        this.transactionalOperator = transactionalOperator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Insert all games, then the positions of the games actually inserted, then the
+     * boards not stored yet, in one transaction, and return the ids of the inserted
+     * games. Games that already exist (a redelivered Kafka message) are skipped together
+     * with their positions rather than failing the batch: a game is always written with
+     * all of its positions, and a redelivery may land in a later month's partition, where
+     * the position key alone would not catch it.
+     */
+    public Mono<Set<String>> write(List<Game> games, List<Position> positions) {
+        return insertGames(games)
+                .flatMap(inserted -> {
+                    List<Position> insertedPositions = positions.stream()
+                            .filter(position -> inserted.contains(position.getGameId()))
+                            .toList();
+                    return insertAll("positions", POSITION_COLUMNS, insertedPositions)
+                            .then(insertAll("board_positions", BOARD_COLUMNS, distinctBoards(insertedPositions)))
+                            .thenReturn(inserted);
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<Set<String>> insertGames(List<Game> games) {
+        return Flux.fromIterable(games)
+                .buffer(rowsPerStatement(GAME_COLUMNS.size()))
+                .concatMap(chunk -> insertStatement("games", GAME_COLUMNS, chunk, " RETURNING id")
+                        .map(row -> row.get("id", String.class))
+                        .all())
+                .collect(Collectors.toSet());
+    }
+
+    // One position per board, in hash order so concurrent batches lock shared boards in the same order
+    private static List<Position> distinctBoards(List<Position> positions) {
+        return List.copyOf(positions.stream()
+                .filter(position -> position.getZobristHash() != null)
+                .collect(Collectors.toMap(Position::getZobristHash, Function.identity(),
+                        (first, second) -> first, TreeMap::new))
+                .values());
+    }
+
+    private <T> Mono<Void> insertAll(String table, List<Column<T>> columns, List<T> rows) {
+        return Flux.fromIterable(rows)
+                .buffer(rowsPerStatement(columns.size()))
+                .concatMap(chunk -> insertStatement(table, columns, chunk, "").fetch().rowsUpdated()
+                        .doOnNext(count -> log.debug("Inserted {} rows into {}", count, table)))
+                .then();
+    }
+
+    private int rowsPerStatement(int columns) {
+        return Math.max(1, Math.min(chunkSize, MAX_BIND_PARAMETERS / columns));
+    }
+
+    private <T> DatabaseClient.GenericExecuteSpec insertStatement(String table, List<Column<T>> columns,
+                                                                  List<T> chunk, String returning) {
+        String columnList = columns.stream().map(Column::name).collect(Collectors.joining(", "));
+        String values = IntStream.range(0, chunk.size())
+                .mapToObj(row -> IntStream.rangeClosed(1, columns.size())
+                        .mapToObj(column -> "$" + (row * columns.size() + column))
+                        .collect(Collectors.joining(", ", "(", ")")))
+                .collect(Collectors.joining(", "));
+
+        // No conflict target: positions is partitioned and only its partitions have a key on id;
+        // board_positions only conflicts on its key, the Zobrist hash
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                "INSERT INTO " + table + " (" + columnList + ") VALUES " + values + " ON CONFLICT DO NOTHING" + returning);
+
+        int index = 0;
+        for (T row : chunk) {
+            for (Column<T> column : columns) {
+                Object value = column.value().apply(row);
+                spec = value == null ? spec.bindNull(index, column.type()) : spec.bind(index, value);
+                index++;
+            }
+        }
+
+        return spec;
+    }
+
+    private record Column<T>(String name, Class<?> type, Function<T, Object> value) {
+    }
+}
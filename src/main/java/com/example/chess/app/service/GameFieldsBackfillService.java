@@ -0,0 +1,78 @@
+package com.example.chess.app.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies min_elo, max_elo and game_type from games onto positions stored before those
+ * columns existed. Walks the primary key in batches after startup, so each row is
+ * visited once; until it finishes, older positions are missing from Elo-filtered searches.
+ */
+@Service
+@Slf4j
+public class GameFieldsBackfillService {
+
+    private static final int BATCH_SIZE = 10000;
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final DatabaseClient databaseClient;
+
+    public GameFieldsBackfillService(@Qualifier("ingestDatabaseClient") DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        AtomicLong batches = new AtomicLong();
+        backfillBatch(FIRST_ID)
+                .expand(this::backfillBatch)
+                .doOnNext(lastId -> batches.incrementAndGet())
+                .then()
+                .doOnSuccess(v -> {
+                    if (batches.get() > 0) log.info("Backfilled game fields in {} batches", batches.get());
+                })
+                .doOnError(e -> log.error("Error backfilling game fields on positions:", e))
+                .subscribe();
+    }
+
+    /**
+     * Fill the next batch of positions after {@code after} and return the last id
+     * visited, or empty when there is nothing left. Positions of games without both
+     * ratings keep NULL Elo values and are skipped by the key walk.
+     */
+    private Mono<UUID> backfillBatch(UUID after) {
+        return databaseClient.sql("""
+                WITH batch AS (
+                    SELECT p.id, g.white_elo, g.black_elo, g.game_type
+                    FROM positions p
+                    JOIN games g ON g.id = p.game_id
+                    WHERE p.id > :after AND p.min_elo IS NULL AND p.game_type IS NULL
+                    ORDER BY p.id
+                    LIMIT :batchSize
+                ), updated AS (
+                    UPDATE positions p
+                    SET min_elo = CASE WHEN b.white_elo IS NULL OR b.black_elo IS NULL
+                                       THEN NULL ELSE LEAST(b.white_elo, b.black_elo) END,
+                        max_elo = CASE WHEN b.white_elo IS NULL OR b.black_elo IS NULL
+                                       THEN NULL ELSE GREATEST(b.white_elo, b.black_elo) END,
+                        game_type = b.game_type
+                    FROM batch b
+                    WHERE p.id = b.id
+                )
+                SELECT id FROM batch ORDER BY id DESC LIMIT 1
+                """)
+                .bind("after", after)
+                .bind("batchSize", BATCH_SIZE)
+                .map(row -> row.get("id", UUID.class))
+                .one();
+    }
+}
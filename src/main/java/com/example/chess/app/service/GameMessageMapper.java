@@ -0,0 +1,141 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.GameDTO;
+import com.example.chess.app.dto.GameMetadataDTO;
+import com.example.chess.app.dto.PositionDTO;
+import com.example.chess.app.model.Board;
+import com.example.chess.app.model.Game;
+import com.example.chess.app.model.Position;
+import com.example.chess.app.util.BitboardUtils;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maps a deserialized game message to the Game and Position entities written by
+ * ingest. Has no collaborators, so it can be used on its own (e.g. in benchmarks).
+ */
+@Component
+public class GameMessageMapper {
+
+    public MappedGame map(GameDTO gameData) {
+        String gameId = gameData.getGameMetadata().getGameId();
+        if (gameId == null || gameId.isEmpty()) {
+            gameId = contentGameId(gameData);
+        }
+
+        Game game = mapToGame(gameData.getGameMetadata(), gameId);
+        List<Position> positions = mapToPositions(gameData.getPositions(), gameData.getGameMetadata(), gameId);
+        return new MappedGame(game, positions);
+    }
+
+    /**
+     * Id for a message that carries none. Name-based over the game's metadata and its
+     * positions' FENs, so a redelivery (or the same game published twice) maps to the
+     * same id and is skipped as already stored instead of being written again.
+     */
+    static String contentGameId(GameDTO gameData) {
+        GameMetadataDTO metadata = gameData.getGameMetadata();
+        StringBuilder name = new StringBuilder("game");
+        for (Object field : new Object[]{metadata.getSite(), metadata.getDate(), metadata.getWhiteName(),
+                metadata.getBlackName(), metadata.getWhiteElo(), metadata.getBlackElo(), metadata.getResult(),
+                metadata.getGameType(), metadata.getTimeControl(), metadata.getEco(), metadata.getPgn()}) {
+            name.append('|').append(field);
+        }
+        for (PositionDTO position : gameData.getPositions()) {
+            name.append('|').append(position.getMoveNumber()).append(':').append(position.getFen());
+        }
+        return UUID.nameUUIDFromBytes(name.toString().getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private Game mapToGame(GameMetadataDTO metadata, String gameId) {
+        return Game.builder()
+                .id(gameId)
+                .result(metadata.getResult())
+                .whiteElo(metadata.getWhiteElo())
+                .blackElo(metadata.getBlackElo())
+                .gameType(metadata.getGameType())
+                .date(metadata.getDate())
+                .whiteName(metadata.getWhiteName())
+                .blackName(metadata.getBlackName())
+                .eco(metadata.getEco())
+                .timeControl(metadata.getTimeControl())
+                .opening(metadata.getOpening())
+                .site(metadata.getSite())
+                .pgn(metadata.getPgn())
+                .build();
+    }
+
+    public List<Position> mapToPositions(List<PositionDTO> positionDTOs, GameMetadataDTO metadata) {
+        return mapToPositions(positionDTOs, metadata, metadata.getGameId());
+    }
+
+    private List<Position> mapToPositions(List<PositionDTO> positionDTOs, GameMetadataDTO metadata, String gameId) {
+        List<Position> positions = new ArrayList<>(positionDTOs.size());
+        Board board = new Board();
+
+        // Both ratings are needed for the range check; a missing one leaves the position out of Elo searches
+        Integer whiteElo = metadata.getWhiteElo();
+        Integer blackElo = metadata.getBlackElo();
+        Integer minElo = whiteElo == null || blackElo == null ? null : Math.min(whiteElo, blackElo);
+        Integer maxElo = whiteElo == null || blackElo == null ? null : Math.max(whiteElo, blackElo);
+
+        for (int index = 0; index < positionDTOs.size(); index++) {
+            PositionDTO dto = positionDTOs.get(index);
+            // Same primitive board as the FEN query path, so both hash and store identically
+            fillBoard(dto, board);
+
+            Position position = PositionService.toPosition(board);
+            position.setId(positionId(gameId, dto.getMoveNumber(), index));
+            position.setGameId(gameId);
+            position.setMoveNumber(dto.getMoveNumber());
+            position.setFen(dto.getFen());
+            position.setMinElo(minElo);
+            position.setMaxElo(maxElo);
+            position.setGameType(metadata.getGameType());
+            position.setNew(true);
+
+            positions.add(position);
+        }
+
+        return positions;
+    }
+
+    /**
+     * Name-based, so a redelivered message maps to the same ids and the insert's
+     * conflict clause drops the copies. Falls back to the position's place in the
+     * message when it has no move number.
+     */
+    static UUID positionId(String gameId, Integer moveNumber, int index) {
+        String name = gameId + ":" + (moveNumber != null ? moveNumber.toString() : "#" + index);
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void fillBoard(PositionDTO dto, Board board) {
+        board.clear();
+        board.setPieces(Board.WHITE_PAWN, dto.getWhitePawns() == null ? 0L : dto.getWhitePawns());
+        board.setPieces(Board.WHITE_KNIGHT, BitboardUtils.fromSquares(dto.getWhiteKnights()));
+        board.setPieces(Board.WHITE_BISHOP, BitboardUtils.fromSquares(dto.getWhiteBishops()));
+        board.setPieces(Board.WHITE_ROOK, BitboardUtils.fromSquares(dto.getWhiteRooks()));
+        board.setPieces(Board.WHITE_QUEEN, BitboardUtils.fromSquares(dto.getWhiteQueens()));
+        board.setPieces(Board.WHITE_KING, BitboardUtils.fromSquare(dto.getWhiteKing()));
+        board.setPieces(Board.BLACK_PAWN, dto.getBlackPawns() == null ? 0L : dto.getBlackPawns());
+        board.setPieces(Board.BLACK_KNIGHT, BitboardUtils.fromSquares(dto.getBlackKnights()));
+        board.setPieces(Board.BLACK_BISHOP, BitboardUtils.fromSquares(dto.getBlackBishops()));
+        board.setPieces(Board.BLACK_ROOK, BitboardUtils.fromSquares(dto.getBlackRooks()));
+        board.setPieces(Board.BLACK_QUEEN, BitboardUtils.fromSquares(dto.getBlackQueens()));
+        board.setPieces(Board.BLACK_KING, BitboardUtils.fromSquare(dto.getBlackKing()));
+
+        board.setWhiteToMove(!("b".equalsIgnoreCase(dto.getSideToMove()) || "black".equalsIgnoreCase(dto.getSideToMove())));
+        if (dto.getCastlingRights() != null) board.setCastlingRights(dto.getCastlingRights() & 15);
+        if (dto.getEnPassantSquare() != null && dto.getEnPassantSquare() != 0) board.setEnPassantSquare(dto.getEnPassantSquare());
+        if (dto.getHalfmoveClock() != null) board.setHalfMoveClock(dto.getHalfmoveClock());
+        if (dto.getFullmoveNumber() != null) board.setFullMoveNumber(dto.getFullmoveNumber());
+    }
+
+    public record MappedGame(Game game, List<Position> positions) {
+    }
+}
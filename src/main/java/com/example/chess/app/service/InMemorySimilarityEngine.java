@@ -0,0 +1,318 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.dto.request.SimilarityResult;
+import com.example.chess.app.model.Board;
+import com.example.chess.app.model.Position;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a compact, column-oriented copy of every position in memory and scores
+ * similarity queries in the JVM. Postgres is only used to load the columns at
+ * startup; the caller hydrates the winning rows.
+ *
+ * Scoring mirrors the SQL built in {@link PositionMatchingService}: pawns use a
+ * Jaccard score, kings an equality score and the remaining pieces the fraction
+ * of the query's squares that are also occupied in the candidate. Ties are broken
+ * the same way, by game id and then move number.
+ *
+ * Unlike the SQL path, every position is scored: there are no material buckets, so
+ * positions more than {@link PositionMatchingService#MAX_MATERIAL_DISTANCE} pieces
+ * away from the query can rank, and a better game in a farther bucket is not
+ * passed over once a nearer one fills the limit; and pawns are not restricted to
+ * the nearest pawn structures. The two engines return the same games when every
+ * candidate shares the query's material and the pawn structure index is disabled.
+ */
+@Service
+@Slf4j
+public class InMemorySimilarityEngine {
+
+    // How a selected piece type is scored, matching the SQL clause used for it
+    private static final int JACCARD = 0;
+    private static final int EQUALITY = 1;
+    private static final int OVERLAP = 2;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    // Stored in place of a missing Elo so the range check always rejects the row
+    private static final int NO_ELO = Integer.MIN_VALUE;
+
+    private final DatabaseClient databaseClient;
+    private final SearchMetrics searchMetrics;
+    private final boolean enabled;
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private volatile boolean ready = false;
+
+    public InMemorySimilarityEngine(DatabaseClient databaseClient, SearchMetrics searchMetrics,
+                                    @Value("${chess.similarity.engine:sql}") String engine) {
+        this.databaseClient = databaseClient;
+        this.searchMetrics = searchMetrics;
+        this.enabled = "memory".equalsIgnoreCase(engine);
+    }
+
+    /**
+     * True once the initial load has finished; until then searches go to SQL.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPositions() {
+        if (!enabled) {
+            return;
+        }
+
+        log.info("Loading positions into the in-memory similarity engine...");
+        long start = System.currentTimeMillis();
+
+        databaseClient.sql("""
+                SELECT p.id, p.game_id, p.move_number,
+                       p.white_king, p.white_queens, p.white_rooks, p.white_bishops, p.white_knights, p.white_pawns,
+                       p.black_king, p.black_queens, p.black_rooks, p.black_bishops, p.black_knights, p.black_pawns,
+                       g.white_elo, g.black_elo
+                FROM positions p
+                JOIN games g ON g.id = p.game_id
+                ORDER BY p.game_id, p.move_number
+                """)
+                .map((row, metadata) -> {
+                    Position position = Position.builder()
+                            .id(row.get("id", UUID.class))
+                            .gameId(row.get("game_id", String.class))
+                            .moveNumber(row.get("move_number", Integer.class))
+                            .whiteKing(row.get("white_king", Integer.class))
+                            .whiteQueens(row.get("white_queens", Long.class))
+                            .whiteRooks(row.get("white_rooks", Long.class))
+                            .whiteBishops(row.get("white_bishops", Long.class))
+                            .whiteKnights(row.get("white_knights", Long.class))
+                            .whitePawns(row.get("white_pawns", Long.class))
+                            .blackKing(row.get("black_king", Integer.class))
+                            .blackQueens(row.get("black_queens", Long.class))
+                            .blackRooks(row.get("black_rooks", Long.class))
+                            .blackBishops(row.get("black_bishops", Long.class))
+                            .blackKnights(row.get("black_knights", Long.class))
+                            .blackPawns(row.get("black_pawns", Long.class))
+                            .build();
+                    add(position, row.get("white_elo", Integer.class), row.get("black_elo", Integer.class));
+                    return position;
+                })
+                .all()
+                .count()
+                .doOnSuccess(count -> {
+                    ready = true;
+                    log.info("Loaded {} positions into the in-memory similarity engine in {} ms",
+                            count, System.currentTimeMillis() - start);
+                })
+                .doOnError(e -> log.error("Error loading positions into the in-memory similarity engine:", e))
+                .subscribe();
+    }
+
+    /**
+     * Index the positions of a freshly ingested game.
+     */
+    public void addAll(List<Position> positions, Integer whiteElo, Integer blackElo) {
+        if (!enabled) {
+            return;
+        }
+        for (Position position : positions) {
+            add(position, whiteElo, blackElo);
+        }
+    }
+
+    private synchronized void add(Position position, Integer whiteElo, Integer blackElo) {
+        Columns current = columns;
+        int row = current.size;
+        Columns next = row < current.capacity() ? current.withSize(row + 1) : current.grow(row + 1);
+
+        next.idMostSigBits[row] = position.getId().getMostSignificantBits();
+        next.idLeastSigBits[row] = position.getId().getLeastSignificantBits();
+        next.gameIds[row] = position.getGameId();
+        next.moveNumbers[row] = position.getMoveNumber() == null ? 0 : position.getMoveNumber();
+        next.whiteElo[row] = whiteElo == null ? NO_ELO : whiteElo;
+        next.blackElo[row] = blackElo == null ? NO_ELO : blackElo;
+
+        // One bitboard column per piece type, indexed like Board
+        Board board = Board.from(position);
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            next.bitboards[piece][row] = board.pieces(piece);
+        }
+
+        columns = next;
+    }
+
+    /**
+     * Score every position against the query and return the best position of each of
+     * the top {@code limit} games, like the SQL path.
+     */
+    public Flux<SimilarityResult> findSimilarPositions(Position position, SimilarityRequest request) {
+        return Flux.defer(() -> Flux.fromIterable(search(position, request)));
+    }
+
+    private List<SimilarityResult> search(Position position, SimilarityRequest request) {
+        // Resolve the selected pieces to column indexes and query bitboards, skipping
+        // pieces the SQL path would skip (missing king, no pieces of that type)
+        Board queryBoard = Board.from(position);
+        int[] pieces = new int[Board.PIECE_TYPES];
+        long[] queries = new long[Board.PIECE_TYPES];
+        int[] kinds = new int[Board.PIECE_TYPES];
+        int selected = 0;
+        for (String pieceType : request.getPieceTypes()) {
+            int piece = Board.PIECE_NAMES.indexOf(pieceType);
+            long query = queryBoard.pieces(piece);
+            if (query == 0 && !pieceType.endsWith("Pawn")) {
+                continue;
+            }
+            pieces[selected] = piece;
+            queries[selected] = query;
+            kinds[selected] = pieceType.endsWith("Pawn") ? JACCARD : pieceType.endsWith("King") ? EQUALITY : OVERLAP;
+            selected++;
+        }
+
+        long scanStart = System.nanoTime();
+        Columns snapshot = columns;
+        int minElo = request.getMinElo();
+        int maxElo = request.getMaxElo();
+
+        // Rows of a game are contiguous, so the best row per game is tracked while
+        // streaming and only offered to the top-k heap when the game changes. A game
+        // split by a concurrent load and ingest is offered twice; the heap keeps its best row
+        BoundedScoreHeap heap = new BoundedScoreHeap(request.getLimit());
+        String currentGame = null;
+        int bestRow = -1;
+        double bestScore = -1;
+
+        for (int row = 0; row < snapshot.size; row++) {
+            int whiteElo = snapshot.whiteElo[row];
+            int blackElo = snapshot.blackElo[row];
+            if (whiteElo < minElo || whiteElo > maxElo || blackElo < minElo || blackElo > maxElo) {
+                continue;
+            }
+
+            double score = selected == 0 ? 0.0 : score(snapshot, row, pieces, queries, kinds, selected);
+            if (score < 0) {
+                continue;
+            }
+
+            String game = snapshot.gameIds[row];
+            if (game != currentGame && !game.equals(currentGame)) {
+                if (bestRow >= 0) {
+                    heap.offer(bestRow, bestScore, currentGame);
+                }
+                currentGame = game;
+                bestRow = row;
+                bestScore = score;
+            } else if (score > bestScore) {
+                bestRow = row;
+                bestScore = score;
+            }
+        }
+        if (bestRow >= 0) {
+            heap.offer(bestRow, bestScore, currentGame);
+        }
+        long dedupStart = System.nanoTime();
+        searchMetrics.stage(SearchMetrics.MEMORY_SCAN).record(dedupStart - scanStart, TimeUnit.NANOSECONDS);
+
+        List<SimilarityResult> results = new ArrayList<>(heap.size());
+        for (int i : heap.descendingOrder()) {
+            int row = heap.row(i);
+            SimilarityResult result = new SimilarityResult();
+            result.setPositionId(new UUID(snapshot.idMostSigBits[row], snapshot.idLeastSigBits[row]));
+            result.setGameId(snapshot.gameIds[row]);
+            result.setMoveNumber(snapshot.moveNumbers[row]);
+            result.setSimilarityScore(heap.score(i));
+            results.add(result);
+        }
+        searchMetrics.stage(SearchMetrics.DEDUP).record(System.nanoTime() - dedupStart, TimeUnit.NANOSECONDS);
+        return results;
+    }
+
+    /**
+     * Average per-piece score of one row, or -1 when the row fails the prefilter
+     * (no overlap with the query for one of the selected pieces).
+     */
+    private static double score(Columns snapshot, int row, int[] pieces, long[] queries, int[] kinds, int selected) {
+        double total = 0.0;
+        for (int i = 0; i < selected; i++) {
+            long query = queries[i];
+            long board = snapshot.bitboards[pieces[i]][row];
+            long common = board & query;
+            if (common == 0) {
+                return -1;
+            }
+
+            total += switch (kinds[i]) {
+                case JACCARD -> (double) Long.bitCount(common) / Long.bitCount(board | query);
+                case EQUALITY -> 1.0;
+                default -> (double) Long.bitCount(common) / Long.bitCount(query);
+            };
+        }
+        return total / selected;
+    }
+
+    /**
+     * Flat primitive columns plus the number of rows visible to readers. Rows are
+     * only ever appended, so a reader holding a snapshot never sees a torn row.
+     */
+    private static final class Columns {
+        private final long[][] bitboards;
+        private final long[] idMostSigBits;
+        private final long[] idLeastSigBits;
+        private final String[] gameIds;
+        private final int[] moveNumbers;
+        private final int[] whiteElo;
+        private final int[] blackElo;
+        private final int size;
+
+        private Columns(int capacity) {
+            this(new long[Board.PIECE_TYPES][capacity], new long[capacity], new long[capacity],
+                    new String[capacity], new int[capacity], new int[capacity], new int[capacity], 0);
+        }
+
+        private Columns(long[][] bitboards, long[] idMostSigBits, long[] idLeastSigBits, String[] gameIds,
+                        int[] moveNumbers, int[] whiteElo, int[] blackElo, int size) {
+            this.bitboards = bitboards;
+            this.idMostSigBits = idMostSigBits;
+            this.idLeastSigBits = idLeastSigBits;
+            this.gameIds = gameIds;
+            this.moveNumbers = moveNumbers;
+            this.whiteElo = whiteElo;
+            this.blackElo = blackElo;
+            this.size = size;
+        }
+
+        private int capacity() {
+            return gameIds.length;
+        }
+
+        private Columns withSize(int newSize) {
+            return new Columns(bitboards, idMostSigBits, idLeastSigBits, gameIds,
+                    moveNumbers, whiteElo, blackElo, newSize);
+        }
+
+        private Columns grow(int newSize) {
+            int capacity = capacity() * 2;
+            long[][] grownBitboards = new long[bitboards.length][];
+            for (int piece = 0; piece < bitboards.length; piece++) {
+                grownBitboards[piece] = Arrays.copyOf(bitboards[piece], capacity);
+            }
+            return new Columns(grownBitboards,
+                    Arrays.copyOf(idMostSigBits, capacity),
+                    Arrays.copyOf(idLeastSigBits, capacity),
+                    Arrays.copyOf(gameIds, capacity),
+                    Arrays.copyOf(moveNumbers, capacity),
+                    Arrays.copyOf(whiteElo, capacity),
+                    Arrays.copyOf(blackElo, capacity),
+                    newSize);
+        }
+    }
+}
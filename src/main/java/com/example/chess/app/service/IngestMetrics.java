@@ -0,0 +1,77 @@
+package com.example.chess.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the ingest pipeline. Games and positions written are counters, so
+ * throughput per second is their rate on the dashboard.
+ */
+@Component
+public class IngestMetrics {
+
+    private final DistributionSummary batchSize;
+    private final Counter parseFailures;
+    private final Counter deadLetters;
+    private final Counter gamesWritten;
+    private final Counter positionsWritten;
+    private final Timer writeSuccess;
+    private final Timer writeFailure;
+
+    public IngestMetrics(MeterRegistry registry) {
+        this.batchSize = DistributionSummary.builder("chess.ingest.batch.size")
+                .description("Messages per ingest batch")
+                .baseUnit("messages")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.parseFailures = Counter.builder("chess.ingest.parse.failures")
+                .description("Messages that could not be deserialized")
+                .register(registry);
+        this.deadLetters = Counter.builder("chess.ingest.dead.letters")
+                .description("Records that could not be written and were moved to the dead-letter topic")
+                .register(registry);
+        this.gamesWritten = Counter.builder("chess.ingest.games.written")
+                .baseUnit("games")
+                .register(registry);
+        this.positionsWritten = Counter.builder("chess.ingest.positions.written")
+                .baseUnit("positions")
+                .register(registry);
+        this.writeSuccess = writeTimer(registry, "success");
+        this.writeFailure = writeTimer(registry, "failure");
+    }
+
+    private static Timer writeTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("chess.ingest.write")
+                .description("Time to write one batch of games and positions to Postgres")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void batchReceived(int messages) {
+        batchSize.record(messages);
+    }
+
+    public void parseFailed() {
+        parseFailures.increment();
+    }
+
+    public void deadLettered() {
+        deadLetters.increment();
+    }
+
+    public void batchWritten(int games, int positions, long nanos) {
+        gamesWritten.increment(games);
+        positionsWritten.increment(positions);
+        writeSuccess.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void batchFailed(long nanos) {
+        writeFailure.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
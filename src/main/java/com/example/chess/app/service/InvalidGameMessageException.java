@@ -0,0 +1,12 @@
+package com.example.chess.app.service;
+
+/**
+ * A message that deserialized but does not map to a game and its positions. Lets
+ * the ingest pipeline tell bad data apart from a failing database.
+ */
+public class InvalidGameMessageException extends IllegalArgumentException {
+
+    public InvalidGameMessageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,25 +1,39 @@
 package com.example.chess.app.service;
 
-import com.example.chess.app.dto.BitboardsDTO;
 import com.example.chess.app.dto.GameDTO;
-import com.example.chess.app.dto.GameMetadataDTO;
-import com.example.chess.app.dto.PositionDTO;
 import com.example.chess.app.model.Game;
 import com.example.chess.app.model.Position;
-import com.example.chess.app.repository.GameRepository;
-import com.example.chess.app.repository.PositionRepository;
+import com.example.chess.app.service.GameMessageMapper.MappedGame;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.R2dbcException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.annotation.KafkaListener;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -27,115 +41,263 @@ import java.util.UUID;
 public class KafkaListenerService {
 
     private final ObjectMapper objectMapper;
-    private final GameRepository gameRepository;
-    private final PositionRepository positionRepository;
-
-    @KafkaListener(topics = "${kafka.topics.chess-games}", groupId = "${spring.kafka.consumer.group-id}",
-            containerFactory = "kafkaListenerContainerFactory")
-    public void consumeChessGames(List<String> messages) {
-        log.info("Received batch of {} chess game messages", messages.size());
-
-        // Convert messages to GameDTO objects
-        List<GameDTO> gameDataList = messages.stream()
-                .map(this::parseGameData)
-                .filter(gameData -> gameData != null)  // Filter out parsing failures
-                .toList();
+    private final GameMessageMapper gameMapper;
+    private final GameBulkWriter bulkWriter;
+    private final InMemorySimilarityEngine similarityEngine;
+    private final PawnStructureIndex pawnIndex;
+    private final SimilarityResultCache resultCache;
+    private final IngestMetrics ingestMetrics;
+    private final DeadLetterPublisher deadLetters;
+    private final ReceiverOptions<String, String> receiverOptions;
+
+    @Value("${chess.ingest.kafka.enabled:true}")
+    private boolean kafkaEnabled;
+
+    @Value("${chess.ingest.batch-size:500}")
+    private int batchSize;
+
+    @Value("${chess.ingest.batch-timeout:1s}")
+    private Duration batchTimeout;
+
+    // Each batch holds one ingest connection while it is written
+    @Value("${chess.r2dbc.pool.ingest.max-size:4}")
+    private int writeConcurrency;
+
+    // A batch at least this large whose records all fail the same way stops the pipeline instead
+    @Value("${chess.ingest.circuit-breaker.min-records:3}")
+    private int circuitBreakerMinRecords;
+
+    private Disposable subscription;
+
+    /**
+     * Start consuming once the application is up. Partitions are spread over as many
+     * lanes as the ingest pool has connections, and each lane writes one batch at a
+     * time, so a partition's records are written in order and writes never queue for a
+     * connection. A batch's offsets are committed only after its writes succeed. Demand
+     * flows back to the receiver, which pauses fetching while Postgres is behind, so
+     * in-flight data stays bounded.
+     *
+     * A batch failing on its data is retried one record at a time and the records that
+     * still fail go to the dead-letter topic, so one bad record cannot stall its
+     * partition; messages that do not deserialize go there directly. Any other failure,
+     * or every record of a batch failing the same way, restarts the receiver to replay
+     * the uncommitted records once the cause is fixed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startConsuming() {
+        if (!kafkaEnabled) {
+            log.info("Kafka ingestion disabled");
+            return;
+        }
 
-        // Process all games as a single reactive flow
-        Flux.fromIterable(gameDataList)
-                .flatMap(this::processGameData)
+        subscription = Flux.defer(() -> KafkaReceiver.create(receiverOptions).receive())
+                // A fixed number of lanes, so the flatMap below always subscribes to every group
+                .groupBy(record -> Math.floorMod(record.receiverOffset().topicPartition().hashCode(), writeConcurrency))
+                .flatMap(lane -> lane
+                        .bufferTimeout(batchSize, batchTimeout, true)
+                        .concatMap(this::consumeChessGames), writeConcurrency)
+                // uncommitted records are redelivered when the receiver resubscribes
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .doBeforeRetry(signal -> log.warn("Restarting Kafka consumer after error: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopConsuming() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private Mono<Void> consumeChessGames(List<ReceiverRecord<String, String>> records) {
+        log.info("Received batch of {} chess game messages", records.size());
+        ingestMetrics.batchReceived(records.size());
+
+        List<ReceiverRecord<String, String>> parsed = new ArrayList<>(records.size());
+        List<GameDTO> games = new ArrayList<>(records.size());
+        List<Failure> unparseable = new ArrayList<>();
+        for (ReceiverRecord<String, String> record : records) {
+            try {
+                games.add(objectMapper.readValue(record.value(), GameDTO.class));
+                parsed.add(record);
+            } catch (JsonProcessingException e) {
+                parseFailed(e);
+                unparseable.add(new Failure(record, e));
+            }
+        }
+
+        return Mono.defer(() -> processBatch(games))
+                .onErrorResume(KafkaListenerService::isDataError, e -> {
+                    log.warn("Batch of {} messages failed on its data ({}); writing them one at a time",
+                            parsed.size(), e.getMessage());
+                    return writeOneAtATime(parsed, games);
+                })
+                .then(deadLetter(unparseable))
+                .then(Mono.defer(() -> commit(records)))
+                .doOnSuccess(result -> log.info("Processed and committed batch of {} messages", records.size()))
+                .doOnError(e -> log.error("Error processing batch: {}", e.getMessage()));
+    }
+
+    // Games already written by the failed batch attempt are skipped as redeliveries
+    private Mono<Void> writeOneAtATime(List<ReceiverRecord<String, String>> records, List<GameDTO> games) {
+        return Flux.range(0, records.size())
+                .concatMap(i -> Mono.defer(() -> processBatch(List.of(games.get(i))))
+                        .then(Mono.<Failure>empty())
+                        .onErrorResume(KafkaListenerService::isDataError,
+                                e -> Mono.just(new Failure(records.get(i), e))))
                 .collectList()
-                .doOnSuccess(result -> log.info("Processed batch of {} messages", messages.size()))
-                .doOnError(e -> log.error("Error processing batch: {}", e.getMessage()))
-                .subscribe();  // Trigger execution without blocking
+                .flatMap(failures -> {
+                    List<Throwable> errors = failures.stream().map(Failure::error).toList();
+                    if (isSystemic(errors, records.size(), circuitBreakerMinRecords)) {
+                        return Mono.error(new IllegalStateException(String.format(
+                                "All %d records of the batch failed with %s; replaying instead of dead-lettering them",
+                                records.size(), NestedExceptionUtils.getMostSpecificCause(errors.get(0)).getClass()
+                                        .getName()), errors.get(0)));
+                    }
+                    return deadLetter(failures);
+                });
     }
 
-    private GameDTO parseGameData(String message) {
-        try {
-            return objectMapper.readValue(message, GameDTO.class);
-        } catch (JsonProcessingException e) {
-            log.error("Error deserializing message: {}", e.getMessage());
-            return null;
+    private Mono<Void> deadLetter(List<Failure> failures) {
+        return Flux.fromIterable(failures)
+                .concatMap(failure -> deadLetters.publish(failure.record(), failure.error()))
+                .then();
+    }
+
+    // A lane's batch may span several partitions; committing each one's last offset covers the rest
+    private static Mono<Void> commit(List<ReceiverRecord<String, String>> records) {
+        Map<TopicPartition, ReceiverOffset> lastOffsets = new LinkedHashMap<>();
+        for (ReceiverRecord<String, String> record : records) {
+            lastOffsets.put(record.receiverOffset().topicPartition(), record.receiverOffset());
         }
+        return Flux.fromIterable(lastOffsets.values())
+                .concatMap(ReceiverOffset::commit)
+                .then();
     }
 
-    private Mono<Void> processGameData(GameDTO gameData) {
-        // Generate a unique game ID if not provided
-        String gameId = gameData.getGameMetadata().getGameId();
-        if (gameId == null || gameId.isEmpty()) {
-            gameId = UUID.randomUUID().toString();
-            gameData.getGameMetadata().setGameId(gameId);
+    /**
+     * Whether a failure is caused by the record itself, so writing it again can never
+     * succeed: a message that does not map to a game, or a value Postgres rejects (too
+     * long for its column, out of range, violating a constraint). Everything else, such
+     * as the database or broker being unreachable, a timeout, or a schema or statement
+     * the code does not match, says nothing about the records.
+     */
+    static boolean isDataError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InvalidGameMessageException
+                    || cause instanceof DataIntegrityViolationException
+                    || cause instanceof R2dbcDataIntegrityViolationException) {
+                return true;
+            }
+            // SQLSTATE class 22 is a data exception, 23 an integrity constraint violation
+            if (cause instanceof R2dbcException r2dbc && r2dbc.getSqlState() != null
+                    && (r2dbc.getSqlState().startsWith("22") || r2dbc.getSqlState().startsWith("23"))) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        final String finalGameId = gameId;
+    /**
+     * Whether the records of a batch written one at a time all failed with the same
+     * root cause. Then the fault is far more likely in the pipeline (a migration not
+     * applied, a changed producer) than in every single record, and dead-lettering
+     * the batch would only move good data out of the way.
+     */
+    static boolean isSystemic(List<Throwable> errors, int records, int minRecords) {
+        if (records < minRecords || errors.size() < records) {
+            return false;
+        }
+        Class<?> first = NestedExceptionUtils.getMostSpecificCause(errors.get(0)).getClass();
+        return errors.stream().allMatch(error -> NestedExceptionUtils.getMostSpecificCause(error).getClass() == first);
+    }
 
-        // Create Game entity
-        Game game = mapToGame(gameData.getGameMetadata());
-        game.setIsNew(true);
+    /**
+     * Parse and write a batch of game messages exactly as the Kafka pipeline does,
+     * without committing anything. Also used by the load-test harness to seed a corpus.
+     */
+    public Mono<Void> ingest(List<String> messages) {
+        // Deferred so a message that fails to map surfaces as an error signal
+        return Mono.defer(() -> {
+            ingestMetrics.batchReceived(messages.size());
 
-        // Create Position entities
-        List<Position> positions = mapToPositions(gameData.getPositions(), finalGameId);
+            // Without a record to dead-letter, messages that do not deserialize are counted and skipped
+            List<GameDTO> gameDataList = new ArrayList<>(messages.size());
+            for (String message : messages) {
+                try {
+                    gameDataList.add(objectMapper.readValue(message, GameDTO.class));
+                } catch (JsonProcessingException e) {
+                    parseFailed(e);
+                }
+            }
 
-        // Save game first, then save all positions, returning a single Mono that completes when all operations complete
-        return gameRepository.save(game)
-                .then(Flux.fromIterable(positions)
-                        .flatMap(positionRepository::save)
-                        .then())
-                .doOnSuccess(v -> log.debug("Successfully processed game {}", finalGameId))
-                .doOnError(e -> log.error("Error processing game {}: {}", finalGameId, e.getMessage()));
+            return processBatch(gameDataList);
+        });
     }
 
-    private Game mapToGame(GameMetadataDTO metadata) {
-        return Game.builder()
-                .id(metadata.getGameId())
-                .result(metadata.getResult())
-                .whiteElo(metadata.getWhiteElo())
-                .blackElo(metadata.getBlackElo())
-                .gameType(metadata.getGameType())
-                .date(metadata.getDate())
-                .whiteName(metadata.getWhiteName())
-                .blackName(metadata.getBlackName())
-                .eco(metadata.getEco())
-                .timeControl(metadata.getTimeControl())
-                .opening(metadata.getOpening())
-                .site(metadata.getSite())
-                .pgn(metadata.getPgn())
-                .build();
+    private void parseFailed(JsonProcessingException e) {
+        log.error("Error deserializing message: {}", e.getMessage());
+        ingestMetrics.parseFailed();
     }
 
-    private List<Position> mapToPositions(List<PositionDTO> positionDTOs, String gameId) {
-        List<Position> positions = new ArrayList<>();
-
-        for (PositionDTO dto : positionDTOs) {
-
-            Position position = Position.builder()
-                    .id(UUID.randomUUID())
-                    .gameId(gameId)
-                    .moveNumber(dto.getMoveNumber())
-                    .whiteKing(dto.getWhiteKing())
-                    .blackKing(dto.getBlackKing())
-                    .whiteQueens(dto.getWhiteQueens())
-                    .whiteRooks(dto.getWhiteRooks())
-                    .whiteBishops(dto.getWhiteBishops())
-                    .whiteKnights(dto.getWhiteKnights())
-                    .blackQueens(dto.getBlackQueens())
-                    .blackRooks(dto.getBlackRooks())
-                    .blackBishops(dto.getBlackBishops())
-                    .blackKnights(dto.getBlackKnights())
-                    .whitePawns(dto.getWhitePawns())
-                    .blackPawns(dto.getBlackPawns())
-                    .sideToMove(dto.getSideToMove())
-                    .castlingRights(dto.getCastlingRights())
-                    .enPassantSquare(dto.getEnPassantSquare())
-                    .halfMoveClock(dto.getHalfmoveClock())
-                    .fullMoveNumber(dto.getFullmoveNumber())
-                    .fen(dto.getFen())
-                    .isNew(true)
-                    .build();
-
-            positions.add(position);
+    private MappedGame map(GameDTO gameData) {
+        try {
+            return gameMapper.map(gameData);
+        } catch (RuntimeException e) {
+            throw new InvalidGameMessageException("Message does not map to a game: " + e.getMessage(), e);
         }
+    }
+
+    private Mono<Void> processBatch(List<GameDTO> gameDataList) {
+        // The same game twice in one batch is written once
+        List<MappedGame> mappedGames = List.copyOf(gameDataList.stream()
+                .map(this::map)
+                .collect(Collectors.toMap(mapped -> mapped.game().getId(), Function.identity(),
+                        (first, second) -> first, LinkedHashMap::new))
+                .values());
+
+        List<Game> games = mappedGames.stream().map(MappedGame::game).toList();
+        List<Position> positions = mappedGames.stream()
+                .flatMap(mapped -> mapped.positions().stream())
+                .toList();
+
+        // Games and positions of the whole batch go out in chunked multi-row inserts
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return bulkWriter.write(games, positions)
+                    .doOnError(e -> ingestMetrics.batchFailed(System.nanoTime() - start))
+                    .doOnNext(inserted -> {
+                        long nanos = System.nanoTime() - start;
+
+                        // Games already stored (a redelivery) were skipped with their positions,
+                        // so only the inserted ones reach the in-memory indexes
+                        List<MappedGame> insertedGames = mappedGames.stream()
+                                .filter(mapped -> inserted.contains(mapped.game().getId()))
+                                .toList();
+                        List<Position> insertedPositions = insertedGames.stream()
+                                .flatMap(mapped -> mapped.positions().stream())
+                                .toList();
+                        ingestMetrics.batchWritten(insertedGames.size(), insertedPositions.size(), nanos);
+
+                        insertedGames.forEach(mapped -> similarityEngine.addAll(mapped.positions(),
+                                mapped.game().getWhiteElo(), mapped.game().getBlackElo()));
+                        pawnIndex.addAll(insertedPositions);
+                        if (!insertedGames.isEmpty()) {
+                            resultCache.onGamesIngested();
+                        }
+
+                        double seconds = nanos / 1_000_000_000.0;
+                        log.info("Wrote {} games and {} positions in {} ms ({} games/sec), skipped {} already stored",
+                                insertedGames.size(), insertedPositions.size(), Math.round(seconds * 1000),
+                                seconds > 0 ? Math.round(insertedGames.size() / seconds) : insertedGames.size(),
+                                games.size() - insertedGames.size());
+                    })
+                    .then();
+        });
+    }
 
-        return positions;
+    private record Failure(ReceiverRecord<String, String> record, Throwable error) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,73 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.util.MaterialSignature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes material_signature for positions stored before the column existed. The
+ * signature only depends on the piece columns, so each batch is a single UPDATE;
+ * until it finishes, older positions are missing from similarity searches.
+ */
+@Service
+@Slf4j
+public class MaterialSignatureBackfillService {
+
+    private static final int BATCH_SIZE = 10000;
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final DatabaseClient databaseClient;
+
+    public MaterialSignatureBackfillService(@Qualifier("ingestDatabaseClient") DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        AtomicLong batches = new AtomicLong();
+        backfillBatch(FIRST_ID)
+                .expand(this::backfillBatch)
+                .doOnNext(lastId -> batches.incrementAndGet())
+                .then()
+                .doOnSuccess(v -> {
+                    if (batches.get() > 0) log.info("Backfilled material signatures in {} batches", batches.get());
+                })
+                .doOnError(e -> log.error("Error backfilling material signatures:", e))
+                .subscribe();
+    }
+
+    /**
+     * Fill the next batch of positions after {@code after} and return the last id
+     * updated, or empty when there is nothing left
+     */
+    private Mono<UUID> backfillBatch(UUID after) {
+        return databaseClient.sql("""
+                WITH batch AS (
+                    SELECT id
+                    FROM positions
+                    WHERE id > :after AND material_signature IS NULL
+                    ORDER BY id
+                    LIMIT :batchSize
+                ), updated AS (
+                    UPDATE positions p
+                    SET material_signature = %s
+                    FROM batch b
+                    WHERE p.id = b.id
+                )
+                SELECT id FROM batch ORDER BY id DESC LIMIT 1
+                """.formatted(MaterialSignature.SQL))
+                .bind("after", after)
+                .bind("batchSize", BATCH_SIZE)
+                .map(row -> row.get("id", UUID.class))
+                .one();
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.model.Position;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Every distinct pawn structure in positions, per color, indexed for nearest-neighbour
+ * search by Hamming distance. The similarity SQL scores pawns with a linear Jaccard
+ * over every candidate row; with this index the search first picks the closest
+ * structures and only scores rows that have one of them. That makes pawn searches
+ * approximate, see PositionMatchingService for how they fall back when the nearest
+ * structures hold too few games.
+ *
+ * Uses multi-index hashing: pawns only stand on ranks 2-7, so a structure is split
+ * into {@link #CHUNKS} chunks of two ranks, each with its own table from chunk value
+ * to structures. Two structures within distance d agree to within d / CHUNKS bits on
+ * at least one chunk, so probing every chunk value up to s bits from the query's
+ * finds everything within CHUNKS * (s + 1) - 1 bits without looking at the rest.
+ */
+@Service
+@Slf4j
+public class PawnStructureIndex {
+
+    static final int CHUNKS = 3;
+    private static final int CHUNK_BITS = 16;
+    // Rank 1 holds no pawns
+    private static final int FIRST_PAWN_BIT = 8;
+
+    // Widest per-chunk distance probed: 1 + 16 + 120 + 560 values per chunk
+    static final int MAX_CHUNK_DISTANCE = 3;
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final int candidates;
+
+    private final Structures white = new Structures();
+    private final Structures black = new Structures();
+    private volatile boolean ready = false;
+
+    public PawnStructureIndex(DatabaseClient databaseClient,
+                              @Value("${chess.similarity.pawn-index.enabled:true}") boolean enabled,
+                              @Value("${chess.similarity.pawn-index.candidates:256}") int candidates) {
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.candidates = candidates;
+    }
+
+    /**
+     * True once the initial load has finished; until then searches score every pawn structure.
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadStructures() {
+        if (!enabled) {
+            return;
+        }
+
+        log.info("Loading pawn structures into the pawn structure index...");
+        long start = System.currentTimeMillis();
+
+        Flux.concat(distinctStructures("white_pawns", white), distinctStructures("black_pawns", black))
+                .then()
+                .doOnSuccess(v -> {
+                    ready = true;
+                    log.info("Loaded {} white and {} black pawn structures in {} ms",
+                            white.size(), black.size(), System.currentTimeMillis() - start);
+                })
+                .doOnError(e -> log.error("Error loading the pawn structure index:", e))
+                .subscribe();
+    }
+
+    /**
+     * Index the pawn structures of freshly ingested positions.
+     */
+    public void addAll(List<Position> positions) {
+        if (!enabled) {
+            return;
+        }
+        for (Position position : positions) {
+            if (position.getWhitePawns() != null) white.add(position.getWhitePawns());
+            if (position.getBlackPawns() != null) black.add(position.getBlackPawns());
+        }
+    }
+
+    /**
+     * The white pawn structures nearest {@code pawns}, closest first
+     */
+    public long[] nearestWhite(long pawns) {
+        return white.nearest(pawns, candidates);
+    }
+
+    /**
+     * The black pawn structures nearest {@code pawns}, closest first
+     */
+    public long[] nearestBlack(long pawns) {
+        return black.nearest(pawns, candidates);
+    }
+
+    private Flux<Long> distinctStructures(String column, Structures structures) {
+        // Column names are constants, never user input
+        return databaseClient.sql("SELECT DISTINCT " + column + " AS pawns FROM positions WHERE " + column + " IS NOT NULL")
+                .map((row, metadata) -> row.get("pawns", Long.class))
+                .all()
+                .doOnNext(structures::add);
+    }
+
+    static int chunk(long pawns, int chunk) {
+        return (int) (pawns >>> FIRST_PAWN_BIT + chunk * CHUNK_BITS) & (1 << CHUNK_BITS) - 1;
+    }
+
+    // Every 16-bit value exactly `distance` bits from `value`, flipping bits from `from` upward
+    static void forEachAtDistance(int value, int distance, int from, IntConsumer action) {
+        if (distance == 0) {
+            action.accept(value);
+            return;
+        }
+        for (int bit = from; bit <= CHUNK_BITS - distance; bit++) {
+            forEachAtDistance(value ^ 1 << bit, distance - 1, bit + 1, action);
+        }
+    }
+
+    /**
+     * The distinct structures of one color and a posting list per chunk value. Ingest
+     * adds a handful at a time while searches read, so a read-write lock is enough.
+     */
+    static final class Structures {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private long[] structures = new long[1 << 12];
+        private int size;
+
+        // Open addressing over structure ids + 1, 0 marking an empty slot
+        private int[] slots = new int[1 << 13];
+
+        private final int[][][] postings = new int[CHUNKS][1 << CHUNK_BITS][];
+        private final int[][] postingSizes = new int[CHUNKS][1 << CHUNK_BITS];
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void add(long pawns) {
+            lock.writeLock().lock();
+            try {
+                int slot = slot(pawns);
+                if (slots[slot] != 0) {
+                    return;
+                }
+
+                int id = size++;
+                if (id == structures.length) {
+                    structures = Arrays.copyOf(structures, id * 2);
+                }
+                structures[id] = pawns;
+                slots[slot] = id + 1;
+
+                for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                    int value = PawnStructureIndex.chunk(pawns, chunk);
+                    int[] posting = postings[chunk][value];
+                    int count = postingSizes[chunk][value];
+                    if (posting == null) {
+                        posting = postings[chunk][value] = new int[4];
+                    } else if (count == posting.length) {
+                        posting = postings[chunk][value] = Arrays.copyOf(posting, count * 2);
+                    }
+                    posting[count] = id;
+                    postingSizes[chunk][value] = count + 1;
+                }
+
+                // Keep the table at most half full
+                if (size * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Up to {@code wanted} structures nearest {@code pawns} by Hamming distance.
+         * Widens the per-chunk probe until {@code wanted} structures are known to be
+         * within the distance every structure has been seen for, or the widest probe
+         * has run; in the latter case the result may miss structures further away.
+         */
+        long[] nearest(long pawns, int wanted) {
+            lock.readLock().lock();
+            try {
+                BitSet seen = new BitSet();
+                // Found structures bucketed by distance, so closest first needs no sort
+                List<List<Long>> byDistance = new ArrayList<>();
+                for (int distance = 0; distance <= Long.SIZE; distance++) {
+                    byDistance.add(new ArrayList<>());
+                }
+
+                for (int probe = 0; probe <= MAX_CHUNK_DISTANCE; probe++) {
+                    for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                        int[][] table = postings[chunk];
+                        int[] tableSizes = postingSizes[chunk];
+                        forEachAtDistance(PawnStructureIndex.chunk(pawns, chunk), probe, 0, value -> {
+                            int[] posting = table[value];
+                            for (int i = 0; i < tableSizes[value]; i++) {
+                                int id = posting[i];
+                                if (!seen.get(id)) {
+                                    seen.set(id);
+                                    byDistance.get(Long.bitCount(structures[id] ^ pawns)).add(structures[id]);
+                                }
+                            }
+                        });
+                    }
+
+                    int complete = CHUNKS * (probe + 1) - 1;
+                    int within = 0;
+                    for (int distance = 0; distance <= complete; distance++) {
+                        within += byDistance.get(distance).size();
+                    }
+                    if (within >= wanted) {
+                        break;
+                    }
+                }
+
+                long[] nearest = new long[Math.min(wanted, seen.cardinality())];
+                int taken = 0;
+                for (List<Long> structuresAtDistance : byDistance) {
+                    for (Long structure : structuresAtDistance) {
+                        if (taken == nearest.length) return nearest;
+                        nearest[taken++] = structure;
+                    }
+                }
+                return nearest;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int slot(long pawns) {
+            int mask = slots.length - 1;
+            int slot = Long.hashCode(pawns * 0x9E3779B97F4A7C15L) & mask;
+            while (slots[slot] != 0 && structures[slots[slot] - 1] != pawns) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+
+        private void rehash(int capacity) {
+            slots = new int[capacity];
+            for (int id = 0; id < size; id++) {
+                slots[slot(structures[id])] = id + 1;
+            }
+        }
+    }
+}
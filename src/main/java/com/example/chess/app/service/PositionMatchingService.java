@@ -1,9 +1,15 @@
 package com.example.chess.app.service;
 
+import com.example.chess.app.config.PartitionManager;
+import com.example.chess.app.dto.request.ExactPositionResult;
+import com.example.chess.app.dto.request.SimilarityRanking;
 import com.example.chess.app.dto.request.SimilarityRequest;
 import com.example.chess.app.dto.request.SimilarityResult;
+import com.example.chess.app.model.Board;
 import com.example.chess.app.model.Game;
 import com.example.chess.app.model.Position;
+import com.example.chess.app.util.MaterialSignature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
@@ -11,7 +17,11 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.springframework.data.relational.core.query.Criteria.where;
 import static org.springframework.data.relational.core.query.Query.query;
@@ -19,266 +29,709 @@ import static org.springframework.data.relational.core.query.Query.query;
 @Service
 public class PositionMatchingService {
 
+    // positions columns indexed like the Board piece constants
+    private static final String[] PIECE_COLUMNS = {
+            "white_pawns", "white_knights", "white_bishops", "white_rooks", "white_queens", "white_king",
+            "black_pawns", "black_knights", "black_bishops", "black_rooks", "black_queens", "black_king"};
+
+    // Widest material distance searched before giving up on filling the limit
+    static final int MAX_MATERIAL_DISTANCE = 3;
+
+    // Set on top of the piece bitmask when pawns are restricted to the structures
+    // nearest the query's, see PawnStructureIndex
+    static final int PAWN_STRUCTURES = 1 << Board.PIECE_TYPES;
+
     private final R2dbcEntityTemplate template;
+    private final InMemorySimilarityEngine similarityEngine;
+    private final SearchMetrics searchMetrics;
+    private final PartitionManager partitionManager;
+    private final PawnStructureIndex pawnIndex;
+    private final BoardPositionBackfillService boardPositions;
+    private final int partitionConcurrency;
+    private final boolean scoreDistinctBoards;
+
+    // Similarity SQL keyed by table, then by active piece bitmask and PAWN_STRUCTURES; at most 2^13 entries per table
+    private final Map<String, Map<Integer, String>> similaritySqlCache = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, String>> batchSqlCache = new ConcurrentHashMap<>();
+    private final Map<Integer, String> boardSimilaritySqlCache = new ConcurrentHashMap<>();
 
-    public PositionMatchingService(R2dbcEntityTemplate template) {
+    public PositionMatchingService(R2dbcEntityTemplate template, InMemorySimilarityEngine similarityEngine,
+                                   SearchMetrics searchMetrics, PartitionManager partitionManager,
+                                   PawnStructureIndex pawnIndex, BoardPositionBackfillService boardPositions,
+                                   @Value("${chess.similarity.partition-concurrency:4}") int partitionConcurrency,
+                                   @Value("${chess.similarity.score-distinct-boards:true}") boolean scoreDistinctBoards) {
         this.template = template;
+        this.similarityEngine = similarityEngine;
+        this.searchMetrics = searchMetrics;
+        this.partitionManager = partitionManager;
+        this.pawnIndex = pawnIndex;
+        this.boardPositions = boardPositions;
+        this.partitionConcurrency = partitionConcurrency;
+        this.scoreDistinctBoards = scoreDistinctBoards;
     }
 
+    /**
+     * Find the games most similar to the given position. Results only carry ids; the
+     * nested position and game are loaded in batches by the GraphQL layer.
+     */
     public Flux<SimilarityResult> findSimilarPositions(Position position, SimilarityRequest request) {
-        List<String> filters = buildPrefilterConditions(position, request);
-        List<String> scores = buildSimilarityScoreClauses(position, request);
+        // Score in the JVM when the in-memory engine is enabled and loaded, Postgres only hydrates the winners
+        return similarityEngine.isReady()
+                ? searchMetrics.time(searchMetrics.search("memory"), similarityEngine.findSimilarPositions(position, request))
+                : searchMetrics.time(searchMetrics.search("sql"), findSimilarPositionsInDatabase(position, request));
+    }
+
+    /**
+     * Like {@link #findSimilarPositions} but emits a ranking as soon as the first, cheapest
+     * candidates are scored and an improved one as more are. The last ranking is marked
+     * complete. The in-memory engine scores everything in one pass and emits only that.
+     */
+    public Flux<SimilarityRanking> streamSimilarPositions(Position position, SimilarityRequest request) {
+        if (similarityEngine.isReady()) {
+            return searchMetrics.time(searchMetrics.search("memory"), similarityEngine.findSimilarPositions(position, request))
+                    .collectList()
+                    .map(results -> new SimilarityRanking(results, null, true))
+                    .flux();
+        }
+
+        return Flux.defer(() -> {
+            AtomicReference<SimilarityRanking> last = new AtomicReference<>(new SimilarityRanking(List.of(), 0, false));
+            Flux<SimilarityRanking> rankings = rankings(position, request)
+                    .doOnNext(last::set)
+                    .concatWith(Mono.fromSupplier(() ->
+                            new SimilarityRanking(last.get().getResults(), last.get().getMaterialDistance(), true)));
+            return searchMetrics.time(searchMetrics.search("sql_stream"), rankings);
+        });
+    }
 
-        String sql = assembleSimilaritySQL(filters, scores);
+    /**
+     * Look up the games that reached exactly this position through the zobrist_hash index.
+     * Counts cover every matching game; results hold the first occurrence in up to
+     * {@code limit} games.
+     */
+    public Mono<ExactPositionResult> findExactPosition(Position position, int limit) {
+        long hash = position.getZobristHash();
+        DatabaseClient client = template.getDatabaseClient();
 
-        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql);
-        spec = bindFilterValues(spec, position, request);
-        spec = spec.bind("minElo", request.getMinElo());
-        spec = spec.bind("maxElo", request.getMaxElo());
-        spec = spec.bind("limit", request.getLimit()*10);
+        Mono<ExactPositionResult> counts = client.sql("""
+                SELECT COUNT(DISTINCT p.game_id) AS total_games,
+                       COUNT(DISTINCT p.game_id) FILTER (WHERE g.result = '1-0') AS white_wins,
+                       COUNT(DISTINCT p.game_id) FILTER (WHERE g.result = '1/2-1/2') AS draws,
+                       COUNT(DISTINCT p.game_id) FILTER (WHERE g.result = '0-1') AS black_wins
+                FROM positions p
+                JOIN games g ON g.id = p.game_id
+                WHERE p.zobrist_hash = :hash
+                """)
+                .bind("hash", hash)
+                .map((row, metadata) -> {
+                    ExactPositionResult result = new ExactPositionResult();
+                    result.setZobristHash(hash);
+                    result.setTotalGames(row.get("total_games", Long.class).intValue());
+                    result.setWhiteWins(row.get("white_wins", Long.class).intValue());
+                    result.setDraws(row.get("draws", Long.class).intValue());
+                    result.setBlackWins(row.get("black_wins", Long.class).intValue());
+                    return result;
+                })
+                .one();
 
-        return spec.map((row, metadata) -> {
+        Mono<List<SimilarityResult>> games = client.sql("""
+                SELECT DISTINCT ON (p.game_id) p.id AS position_id, p.game_id, p.move_number
+                FROM positions p
+                WHERE p.zobrist_hash = :hash
+                ORDER BY p.game_id, p.move_number
+                LIMIT :limit
+                """)
+                .bind("hash", hash)
+                .bind("limit", limit)
+                .map((row, metadata) -> {
                     SimilarityResult result = new SimilarityResult();
                     result.setPositionId(row.get("position_id", UUID.class));
                     result.setGameId(row.get("game_id", String.class));
                     result.setMoveNumber(row.get("move_number", Integer.class));
-                    result.setSimilarityScore(row.get("similarity_score", Double.class));
+                    result.setSimilarityScore(1.0);
                     return result;
                 })
                 .all()
-                .collectList()
-                .flatMapMany(results -> {
-                    Set<String> seenGames = new HashSet<>();
-                    List<SimilarityResult> uniqueResults = new ArrayList<>();
+                .collectList();
+
+        return Mono.zip(counts, games)
+                .map(tuple -> {
+                    tuple.getT1().setGames(tuple.getT2());
+                    return tuple.getT1();
+                });
+    }
+
+    /**
+     * Load positions by id in one query, keyed by id
+     */
+    public Mono<Map<UUID, Position>> findPositionsByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return searchMetrics.time(searchMetrics.stage(SearchMetrics.HYDRATE_POSITIONS), template.select(Position.class)
+                .matching(query(where("id").in(ids)))
+                .all()
+                .collectMap(Position::getId));
+    }
+
+    /**
+     * Load games by id in one query, keyed by id
+     */
+    public Mono<Map<String, Game>> findGamesByIds(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return searchMetrics.time(searchMetrics.stage(SearchMetrics.HYDRATE_GAMES), template.select(Game.class)
+                .matching(query(where("id").in(ids)))
+                .all()
+                .collectMap(Game::getId));
+    }
+
+    private Flux<SimilarityResult> findSimilarPositionsInDatabase(Position position, SimilarityRequest request) {
+        return rankings(position, request)
+                .takeLast(1)
+                .flatMapIterable(SimilarityRanking::getResults);
+    }
+
+    /**
+     * Search the material buckets nearest the query first: its own signature, then every
+     * signature one piece away, and so on, until {@code limit} games are found or
+     * {@link #MAX_MATERIAL_DISTANCE} is reached. Only the buckets of each ring are scored.
+     *
+     * Each ring queries the partitions of positions separately, up to
+     * {@code chess.similarity.partition-concurrency} at a time, newest (smallest) month
+     * first. A game is written in one transaction, so all of its positions share a
+     * partition. A new ranking is emitted whenever a partition query changes the top
+     * {@code limit}, so the first arrives after the cheapest query.
+     *
+     * When pawns are selected and the pawn structure index is loaded, only positions
+     * whose pawns are among the structures nearest the query's are scored, which makes
+     * the search approximate: the nearest structures are picked by Hamming distance
+     * over every stored position, regardless of the Elo range or material bucket, and
+     * a position just outside them can outscore one inside by the other pieces. If the
+     * restricted rings end short of {@code limit} games, one more query scores every
+     * ring searched without the restriction, so the search never returns fewer games
+     * than an unrestricted one would.
+     *
+     * Once board_positions is complete, each ring is a single query instead that scores
+     * every distinct board once and fans the scores out to the positions sharing it.
+     */
+    private Flux<SimilarityRanking> rankings(Position position, SimilarityRequest request) {
+        return Flux.defer(() -> {
+            Board board = Board.from(position);
+            int active = activePieces(board, request);
+            Map<String, Long[]> pawnStructures = searchMetrics.stage(SearchMetrics.PAWN_INDEX)
+                    .record(() -> nearestPawnStructures(board, active));
+            int pieces = pawnStructures.isEmpty() ? active : active | PAWN_STRUCTURES;
+            List<String> sqls = searchMetrics.stage(SearchMetrics.SQL_BUILD).record(() -> searchSqls(pieces));
+            int signature = MaterialSignature.of(board);
+
+            // Best position per game across everything searched so far. Partition results
+            // are merged one at a time, so a plain map is enough
+            Map<String, SimilarityResult> found = new HashMap<>();
+
+            Flux<SimilarityRanking> rings = Flux.range(0, MAX_MATERIAL_DISTANCE + 1)
+                    // Evaluated once the previous ring has finished, so this is where widening stops
+                    .concatMap(distance -> found.size() >= request.getLimit()
+                            ? Flux.<SimilarityRanking>empty()
+                            : searchRing(sqls, board, pieces, pawnStructures,
+                                    MaterialSignature.ring(signature, distance), request, found, distance));
+
+            // The nearest pawn structures may hold too few games in range; drop the restriction
+            Flux<SimilarityRanking> unrestricted = Flux.defer(() -> pieces == active || found.size() >= request.getLimit()
+                    ? Flux.<SimilarityRanking>empty()
+                    : searchRing(searchSqls(active), board, active, Map.of(),
+                            IntStream.rangeClosed(0, MAX_MATERIAL_DISTANCE)
+                                    .flatMap(distance -> Arrays.stream(MaterialSignature.ring(signature, distance)))
+                                    .toArray(),
+                            request, found, MAX_MATERIAL_DISTANCE));
+
+            return rings.concatWith(unrestricted)
+                    .distinctUntilChanged(SimilarityRanking::getResults);
+        });
+    }
 
+    // One query over distinct boards once they are all stored, else one per partition
+    private List<String> searchSqls(int pieces) {
+        return scoreDistinctBoards && boardPositions.isComplete()
+                ? List.of(boardSimilaritySql(pieces))
+                : searchTables().stream().map(table -> similaritySql(pieces, table)).toList();
+    }
+
+    /**
+     * Score the buckets of {@code signatures} with every query in {@code sqls}, merging
+     * each query's results into {@code found} and emitting the top {@code limit} after it
+     */
+    private Flux<SimilarityRanking> searchRing(List<String> sqls, Board board, int pieces,
+                                               Map<String, Long[]> pawnStructures, int[] signatures,
+                                               SimilarityRequest request, Map<String, SimilarityResult> found,
+                                               int distance) {
+        return Flux.fromIterable(sqls)
+                .flatMap(sql -> searchBuckets(sql, board, pieces, pawnStructures, signatures, request).collectList(),
+                        partitionConcurrency)
+                .map(results -> {
                     for (SimilarityResult result : results) {
-                        if (seenGames.add(result.getGameId())) {
-                            uniqueResults.add(result);
+                        found.merge(result.getGameId(), result,
+                                (a, b) -> a.getSimilarityScore() >= b.getSimilarityScore() ? a : b);
+                    }
+                    return new SimilarityRanking(topResults(found.values(), request.getLimit()), distance, false);
+                });
+    }
+
+    /**
+     * Similarity search for many positions at once, results in input order. Positions
+     * with the same active piece set share one query per material ring and partition:
+     * their bitboards are unnested into a table joined against the bucket index, so
+     * each bucket is read once for all of them. As in the single search, only
+     * positions still short of {@code limit} games widen to the next ring.
+     */
+    public Mono<List<List<SimilarityResult>>> findSimilarPositionsBatch(List<Position> positions,
+                                                                         SimilarityRequest request) {
+        if (similarityEngine.isReady()) {
+            return searchMetrics.time(searchMetrics.search("memory_batch"), Flux.fromIterable(positions)
+                    .concatMap(position -> similarityEngine.findSimilarPositions(position, request).collectList())
+                    .collectList());
+        }
+
+        return searchMetrics.time(searchMetrics.search("sql_batch"), Mono.defer(() -> {
+            List<Board> boards = positions.stream().map(Board::from).toList();
+            Map<Integer, List<Integer>> queriesByPieces = IntStream.range(0, boards.size()).boxed()
+                    .collect(Collectors.groupingBy(query -> activePieces(boards.get(query), request)));
+
+            // Best position per game for each query; merged one row at a time
+            List<Map<String, SimilarityResult>> found = new ArrayList<>(boards.size());
+            for (int query = 0; query < boards.size(); query++) {
+                found.add(new HashMap<>());
+            }
+
+            return Flux.fromIterable(queriesByPieces.entrySet())
+                    .concatMap(group -> searchBatchRings(group.getKey(), group.getValue(), boards, request, found))
+                    .then(Mono.fromSupplier(() -> found.stream()
+                            .map(results -> topResults(results.values(), request.getLimit()))
+                            .toList()));
+        }));
+    }
+
+    private Mono<Void> searchBatchRings(int pieces, List<Integer> queries, List<Board> boards,
+                                        SimilarityRequest request, List<Map<String, SimilarityResult>> found) {
+        List<String> sqls = searchMetrics.stage(SearchMetrics.SQL_BUILD)
+                .record(() -> searchTables().stream().map(table -> batchSimilaritySql(pieces, table)).toList());
+
+        return Flux.range(0, MAX_MATERIAL_DISTANCE + 1)
+                .concatMap(distance -> {
+                    List<Integer> pending = queries.stream()
+                            .filter(query -> found.get(query).size() < request.getLimit())
+                            .toList();
+                    if (pending.isEmpty()) {
+                        return Mono.<Void>empty();
+                    }
+
+                    // One row per pending query and signature of its ring
+                    List<Integer> rowQueries = new ArrayList<>();
+                    List<Integer> rowSignatures = new ArrayList<>();
+                    for (int query : pending) {
+                        for (int signature : MaterialSignature.ring(MaterialSignature.of(boards.get(query)), distance)) {
+                            rowQueries.add(query);
+                            rowSignatures.add(signature);
                         }
-                        if (uniqueResults.size() >= request.getLimit()) break;
                     }
 
-                    return Flux.fromIterable(uniqueResults);
+                    return Flux.fromIterable(sqls)
+                            .flatMap(sql -> searchBatchBuckets(sql, pieces, rowQueries, rowSignatures, boards, request),
+                                    partitionConcurrency)
+                            .doOnNext(hit -> found.get(hit.query()).merge(hit.result().getGameId(), hit.result(),
+                                    (a, b) -> a.getSimilarityScore() >= b.getSimilarityScore() ? a : b))
+                            .then();
                 })
-                .concatMap(this::enrichWithPositionAndGame);
+                .then();
     }
 
-    private List<String> buildPrefilterConditions(Position position,SimilarityRequest request) {
-        List<String> filters = new ArrayList<>();
-        filters.add("g.white_elo BETWEEN :minElo AND :maxElo");
-        filters.add("g.black_elo BETWEEN :minElo AND :maxElo");
+    private Flux<BatchHit> searchBatchBuckets(String sql, int pieces, List<Integer> rowQueries,
+                                              List<Integer> rowSignatures, List<Board> boards,
+                                              SimilarityRequest request) {
+        return Flux.defer(() -> {
+            DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql)
+                    .bind("queryIds", rowQueries.toArray(new Integer[0]))
+                    .bind("signatures", rowSignatures.toArray(new Integer[0]));
+            for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+                if ((pieces & 1 << piece) == 0) continue;
+                int selected = piece;
+                // Kings are stored as a square index, everything else as a bitboard
+                spec = isKing(piece)
+                        ? spec.bind(Board.PIECE_NAMES.get(piece), rowQueries.stream()
+                                .map(query -> Long.numberOfTrailingZeros(boards.get(query).pieces(selected)))
+                                .toArray(Integer[]::new))
+                        : spec.bind(Board.PIECE_NAMES.get(piece), rowQueries.stream()
+                                .map(query -> boards.get(query).pieces(selected))
+                                .toArray(Long[]::new));
+            }
+            spec = spec.bind("minElo", request.getMinElo());
+            spec = spec.bind("maxElo", request.getMaxElo());
+            spec = spec.bind("limit", request.getLimit());
+
+            long start = System.nanoTime();
+            return spec.map((row, metadata) -> {
+                        SimilarityResult result = new SimilarityResult();
+                        result.setPositionId(row.get("position_id", UUID.class));
+                        result.setGameId(row.get("game_id", String.class));
+                        result.setMoveNumber(row.get("move_number", Integer.class));
+                        result.setSimilarityScore(row.get("similarity_score", Double.class));
+                        return new BatchHit(row.get("query_id", Integer.class), result);
+                    })
+                    .all()
+                    .doOnComplete(() -> searchMetrics.stage(SearchMetrics.SQL_EXECUTE)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    // The partitions of positions when known, else the parent table
+    private List<String> searchTables() {
+        List<String> partitions = partitionManager.partitions();
+        return partitions.isEmpty() ? List.of("positions") : partitions;
+    }
+
+    private static List<SimilarityResult> topResults(Collection<SimilarityResult> results, int limit) {
+        return results.stream()
+                .sorted(Comparator.comparing(SimilarityResult::getSimilarityScore).reversed()
+                        .thenComparing(SimilarityResult::getGameId))
+                .limit(limit)
+                .toList();
+    }
+
+    private Flux<SimilarityResult> searchBuckets(String sql, Board board, int pieces,
+                                                 Map<String, Long[]> pawnStructures, int[] signatures,
+                                                 SimilarityRequest request) {
+        return Flux.defer(() -> {
+            DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql);
+            spec = spec.bind("signatures", Arrays.stream(signatures).boxed().toArray(Integer[]::new));
+            spec = bindPieceValues(spec, board, pieces);
+            for (Map.Entry<String, Long[]> structures : pawnStructures.entrySet()) {
+                spec = spec.bind(structures.getKey(), structures.getValue());
+            }
+            spec = spec.bind("minElo", request.getMinElo());
+            spec = spec.bind("maxElo", request.getMaxElo());
+            spec = spec.bind("limit", request.getLimit());
+
+            // Rows of one query are mapped sequentially, so a plain accumulator is enough
+            long start = System.nanoTime();
+            long[] mappingNanos = new long[1];
+
+            return spec.map((row, metadata) -> {
+                        long mapStart = System.nanoTime();
+                        SimilarityResult result = new SimilarityResult();
+                        result.setPositionId(row.get("position_id", UUID.class));
+                        result.setGameId(row.get("game_id", String.class));
+                        result.setMoveNumber(row.get("move_number", Integer.class));
+                        result.setSimilarityScore(row.get("similarity_score", Double.class));
+                        mappingNanos[0] += System.nanoTime() - mapStart;
+                        return result;
+                    })
+                    .all()
+                    .doOnComplete(() -> {
+                        searchMetrics.stage(SearchMetrics.ROW_MAPPING).record(mappingNanos[0], TimeUnit.NANOSECONDS);
+                        searchMetrics.stage(SearchMetrics.SQL_EXECUTE)
+                                .record(System.nanoTime() - start - mappingNanos[0], TimeUnit.NANOSECONDS);
+                    });
+        });
+    }
+
+    /**
+     * For each selected pawn color, the bind parameter restricting it to the structures
+     * nearest the query's. Empty when no pawns are selected or the index is not loaded.
+     */
+    private Map<String, Long[]> nearestPawnStructures(Board board, int pieces) {
+        if (!pawnIndex.isReady()) {
+            return Map.of();
+        }
+        Map<String, Long[]> structures = new HashMap<>();
+        if ((pieces & 1 << Board.WHITE_PAWN) != 0) {
+            structures.put(pawnStructuresParam(Board.WHITE_PAWN),
+                    Arrays.stream(pawnIndex.nearestWhite(board.pieces(Board.WHITE_PAWN))).boxed().toArray(Long[]::new));
+        }
+        if ((pieces & 1 << Board.BLACK_PAWN) != 0) {
+            structures.put(pawnStructuresParam(Board.BLACK_PAWN),
+                    Arrays.stream(pawnIndex.nearestBlack(board.pieces(Board.BLACK_PAWN))).boxed().toArray(Long[]::new));
+        }
+        return structures;
+    }
+
+    private static String pawnStructuresParam(int piece) {
+        return Board.PIECE_NAMES.get(piece) + "Structures";
+    }
+
+    /**
+     * Bitmask over {@link Board} piece indexes of the selected pieces that take part in
+     * the search. Pawns always do; kings and other pieces only when on the board.
+     */
+    int activePieces(Board board, SimilarityRequest request) {
+        int pieces = 0;
         for (String pieceType : request.getPieceTypes()) {
-            switch (pieceType) {
-                case "whitePawn" -> filters.add("white_pawns & :whitePawns > 0");
-                case "blackPawn" -> filters.add("black_pawns & :blackPawns > 0");
-                case "whiteKing" -> {
-                    if (position.getWhiteKing() != null)
-                        filters.add("white_king = :whiteKing");
-                }
-                case "blackKing" -> {
-                    if (position.getBlackKing() != null)
-                        filters.add("black_king = :blackKing");
-                }
-                default -> {
-                    List<Integer> squares = getPieceValue(position, pieceType);
-                    if (squares != null && !squares.isEmpty()) {
-                        filters.add(pieceTypeToColumn(pieceType) + " && :" + pieceType);
-                    }
-                }
+            int piece = Board.PIECE_NAMES.indexOf(pieceType);
+            if (isPawn(piece) || board.pieces(piece) != 0) {
+                pieces |= 1 << piece;
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * The similarity SQL for a set of active pieces over the whole positions table
+     */
+    String similaritySql(int pieces) {
+        return similaritySql(pieces, "positions");
+    }
+
+    /**
+     * The similarity SQL for a set of active pieces over one table or partition. Every
+     * value is a bind parameter, so the text depends only on the piece set and table
+     * and is built once per combination.
+     */
+    String similaritySql(int pieces, String table) {
+        return similaritySqlCache.computeIfAbsent(table, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(pieces, key -> assembleSimilaritySQL(table,
+                        buildPrefilterConditions(key), buildSimilarityScoreClauses(key)));
+    }
+
+    List<String> buildPrefilterConditions(int pieces) {
+        List<String> filters = boardFilters(pieces);
+        filters.addAll(eloFilters("p"));
+        return filters;
+    }
+
+    /**
+     * Filters that only read the board, so they apply to positions and board_positions alike
+     */
+    private List<String> boardFilters(int pieces) {
+        List<String> filters = new ArrayList<>();
+        // Material buckets of the ring being searched
+        filters.add("p.material_signature = ANY(:signatures)");
+        if ((pieces & PAWN_STRUCTURES) != 0) {
+            // Pawn structures nearest the query's, served by the pawn structure indexes
+            for (int piece : new int[]{Board.WHITE_PAWN, Board.BLACK_PAWN}) {
+                if ((pieces & 1 << piece) == 0) continue;
+                filters.add("p." + PIECE_COLUMNS[piece] + " = ANY(:" + pawnStructuresParam(piece) + ")");
             }
         }
+        filters.addAll(pieceFilters(pieces, ":"));
+        return filters;
+    }
+
+    List<String> buildSimilarityScoreClauses(int pieces) {
+        return scoreClauses(pieces, ":");
+    }
+
+    /**
+     * Filters on the Elo range and the selected pieces. Piece values are referenced as
+     * {@code valuePrefix + name}: bind parameters for one query, columns of the unnested
+     * query table for a batch.
+     */
+    private List<String> eloAndPieceFilters(int pieces, String valuePrefix) {
+        List<String> filters = eloFilters("p");
+        filters.addAll(pieceFilters(pieces, valuePrefix));
+        return filters;
+    }
+
+    // Both players within range, using the Elo copied onto the position at ingest
+    private static List<String> eloFilters(String alias) {
+        List<String> filters = new ArrayList<>();
+        filters.add(alias + ".min_elo >= :minElo");
+        filters.add(alias + ".max_elo <= :maxElo");
+        return filters;
+    }
+
+    private List<String> pieceFilters(int pieces, String valuePrefix) {
+        List<String> filters = new ArrayList<>();
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            if ((pieces & 1 << piece) == 0) continue;
+            String column = PIECE_COLUMNS[piece];
+            String value = valuePrefix + Board.PIECE_NAMES.get(piece);
+            filters.add(isKing(piece)
+                    ? "p." + column + " = " + value
+                    : "p." + column + " & " + value + " <> 0");
+        }
         return filters;
     }
 
-    private List<String> buildSimilarityScoreClauses(Position position, SimilarityRequest request) {
+    private List<String> scoreClauses(int pieces, String valuePrefix) {
         List<String> scores = new ArrayList<>();
-        for (String pieceType : request.getPieceTypes()) {
-            switch (pieceType) {
-                case "whitePawn" -> scores.add(similarityForBitboard("white_pawns", position.getWhitePawns()));
-                case "blackPawn" -> scores.add(similarityForBitboard("black_pawns", position.getBlackPawns()));
-                case "whiteKing" -> {
-                    if (position.getWhiteKing() != null)
-                        scores.add(equalityScore("white_king", position.getWhiteKing()));
-                }
-                case "blackKing" -> {
-                    if (position.getBlackKing() != null)
-                        scores.add(equalityScore("black_king", position.getBlackKing()));
-                }
-                default -> {
-                    List<Integer> squares = getPieceValue(position, pieceType);
-                    if (squares != null && !squares.isEmpty()) {
-                        scores.add(arrayOverlapScore(pieceTypeToColumn(pieceType), pieceType));
-                    }
-                }
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            if ((pieces & 1 << piece) == 0) continue;
+            String column = PIECE_COLUMNS[piece];
+            String value = valuePrefix + Board.PIECE_NAMES.get(piece);
+            if (isPawn(piece)) {
+                scores.add(similarityForBitboard(column, value));
+            } else if (isKing(piece)) {
+                scores.add(equalityScore(column, value));
+            } else {
+                scores.add(bitboardOverlapScore(column, value));
             }
         }
         return scores;
     }
 
-    private String assembleSimilaritySQL(List<String> filters, List<String> scores) {
+    String assembleSimilaritySQL(String table, List<String> filters, List<String> scores) {
         String filterClause = String.join(" AND ", filters);
+        String scoreClause = scores.isEmpty() ? "0.0" : "(" + String.join(" + ", scores) + ") / " + scores.size();
 
-        if (scores.isEmpty()) {
-            return String.format("""
-            WITH filtered_positions AS (
-                SELECT p.id
-                FROM positions p
-                JOIN games g ON g.id = p.game_id
-                WHERE %s
-                LIMIT 50000
-            )
-            SELECT 
+        // Filter and score the positions of the requested material buckets in one pass, keep
+        // only the best position of each game, then take the top :limit games
+        return String.format("""
+        WITH scored_positions AS (
+            SELECT
                 p.id AS position_id,
                 p.game_id,
                 p.move_number,
-                0.0 AS similarity_score
-            FROM positions p
-            JOIN filtered_positions f ON p.id = f.id
-            ORDER BY similarity_score DESC
-            LIMIT :limit
-        """, filterClause);
-        }
+                (%s)::float8 AS similarity_score
+            FROM %s p
+            WHERE %s
+        ),
+        best_per_game AS (
+            SELECT DISTINCT ON (game_id) position_id, game_id, move_number, similarity_score
+            FROM scored_positions
+            ORDER BY game_id, similarity_score DESC, move_number
+        )
+        SELECT position_id, game_id, move_number, similarity_score
+        FROM best_per_game
+        ORDER BY similarity_score DESC, game_id
+        LIMIT :limit
+    """, scoreClause, table, filterClause);
+    }
+
+    /**
+     * The similarity SQL scoring board_positions for a set of active pieces, built once
+     * per combination. Takes the same bind parameters as {@link #similaritySql(int, String)}.
+     */
+    String boardSimilaritySql(int pieces) {
+        return boardSimilaritySqlCache.computeIfAbsent(pieces, this::assembleBoardSimilaritySQL);
+    }
 
-        String scoreClause = "(" + String.join(" + ", scores) + ") / " + scores.size();
+    String assembleBoardSimilaritySQL(int pieces) {
+        List<String> scores = scoreClauses(pieces, ":");
+        String scoreClause = scores.isEmpty() ? "0.0" : "(" + String.join(" + ", scores) + ") / " + scores.size();
+        String filterClause = String.join(" AND ", boardFilters(pieces));
+        String eloClause = String.join(" AND ", eloFilters("o"));
 
+        // Score each distinct board of the requested buckets once, fan the score out to every
+        // position with that board within the Elo range, then the same best-per-game and
+        // top :limit steps as the per-position query
         return String.format("""
-        WITH filtered_positions AS (
-            SELECT p.id
-            FROM positions p
-            JOIN games g ON g.id = p.game_id
+        WITH scored_boards AS (
+            SELECT
+                p.zobrist_hash,
+                (%s)::float8 AS similarity_score
+            FROM board_positions p
+            WHERE %s
+        ),
+        scored_positions AS (
+            SELECT
+                o.id AS position_id,
+                o.game_id,
+                o.move_number,
+                s.similarity_score
+            FROM scored_boards s
+            JOIN positions o ON o.zobrist_hash = s.zobrist_hash
             WHERE %s
-            LIMIT 50000
+        ),
+        best_per_game AS (
+            SELECT DISTINCT ON (game_id) position_id, game_id, move_number, similarity_score
+            FROM scored_positions
+            ORDER BY game_id, similarity_score DESC, move_number
         )
-        SELECT 
-            p.id AS position_id,
-            p.game_id,
-            p.move_number,
-            %s AS similarity_score
-        FROM positions p
-        JOIN filtered_positions f ON p.id = f.id
-        ORDER BY similarity_score DESC
+        SELECT position_id, game_id, move_number, similarity_score
+        FROM best_per_game
+        ORDER BY similarity_score DESC, game_id
         LIMIT :limit
-    """, filterClause, scoreClause);
+    """, scoreClause, filterClause, eloClause);
     }
 
-    private DatabaseClient.GenericExecuteSpec bindFilterValues(DatabaseClient.GenericExecuteSpec spec, Position position, SimilarityRequest request) {
-        for (String pieceType : request.getPieceTypes()) {
-            switch (pieceType) {
-                case "whitePawn" -> {
-                    if (position.getWhitePawns() != null)
-                        spec = spec.bind("whitePawns", position.getWhitePawns());
-                }
-                case "blackPawn" -> {
-                    if (position.getBlackPawns() != null)
-                        spec = spec.bind("blackPawns", position.getBlackPawns());
-                }
-                case "whiteKing" -> {
-                    if (position.getWhiteKing() != null)
-                        spec = spec.bind("whiteKing", position.getWhiteKing());
-                }
-                case "blackKing" -> {
-                    if (position.getBlackKing() != null)
-                        spec = spec.bind("blackKing", position.getBlackKing());
-                }
-                case "whiteQueen" -> {
-                    if (position.getWhiteQueens() != null && !position.getWhiteQueens().isEmpty())
-                        spec = spec.bind("whiteQueen", position.getWhiteQueens().toArray(new Integer[0]));
-                }
-                case "whiteRook" -> {
-                    if (position.getWhiteRooks() != null && !position.getWhiteRooks().isEmpty())
-                        spec = spec.bind("whiteRook", position.getWhiteRooks().toArray(new Integer[0]));
-                }
-                case "whiteBishop" -> {
-                    if (position.getWhiteBishops() != null && !position.getWhiteBishops().isEmpty())
-                        spec = spec.bind("whiteBishop", position.getWhiteBishops().toArray(new Integer[0]));
-                }
-                case "whiteKnight" -> {
-                    if (position.getWhiteKnights() != null && !position.getWhiteKnights().isEmpty())
-                        spec = spec.bind("whiteKnight", position.getWhiteKnights().toArray(new Integer[0]));
-                }
-                case "blackQueen" -> {
-                    if (position.getBlackQueens() != null && !position.getBlackQueens().isEmpty())
-                        spec = spec.bind("blackQueen", position.getBlackQueens().toArray(new Integer[0]));
-                }
-                case "blackRook" -> {
-                    if (position.getBlackRooks() != null && !position.getBlackRooks().isEmpty())
-                        spec = spec.bind("blackRook", position.getBlackRooks().toArray(new Integer[0]));
-                }
-                case "blackBishop" -> {
-                    if (position.getBlackBishops() != null && !position.getBlackBishops().isEmpty())
-                        spec = spec.bind("blackBishop", position.getBlackBishops().toArray(new Integer[0]));
-                }
-                case "blackKnight" -> {
-                    if (position.getBlackKnights() != null && !position.getBlackKnights().isEmpty())
-                        spec = spec.bind("blackKnight", position.getBlackKnights().toArray(new Integer[0]));
-                }
-            }
+    /**
+     * The batch similarity SQL for a set of active pieces over one table or partition,
+     * built once per combination like {@link #similaritySql(int, String)}
+     */
+    String batchSimilaritySql(int pieces, String table) {
+        return batchSqlCache.computeIfAbsent(table, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(pieces, key -> assembleBatchSimilaritySQL(table, key));
+    }
+
+    String assembleBatchSimilaritySQL(String table, int pieces) {
+        StringBuilder arrays = new StringBuilder();
+        StringBuilder columns = new StringBuilder();
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            if ((pieces & 1 << piece) == 0) continue;
+            arrays.append(", :").append(Board.PIECE_NAMES.get(piece));
+            columns.append(", ").append(Board.PIECE_NAMES.get(piece));
+        }
+        List<String> scores = scoreClauses(pieces, "q.");
+        String scoreClause = scores.isEmpty() ? "0.0" : "(" + String.join(" + ", scores) + ") / " + scores.size();
+        String filterClause = String.join(" AND ", eloAndPieceFilters(pieces, "q."));
+
+        // One row per query and material bucket of its ring, joined against the bucket index,
+        // then the same best-per-game and top :limit steps as the single query, per query
+        return String.format("""
+        WITH queries AS (
+            SELECT * FROM unnest(:queryIds, :signatures%s) AS q(query_id, signature%s)
+        ),
+        scored_positions AS (
+            SELECT
+                q.query_id,
+                p.id AS position_id,
+                p.game_id,
+                p.move_number,
+                (%s)::float8 AS similarity_score
+            FROM queries q
+            JOIN %s p ON p.material_signature = q.signature
+            WHERE %s
+        ),
+        best_per_game AS (
+            SELECT DISTINCT ON (query_id, game_id) query_id, position_id, game_id, move_number, similarity_score
+            FROM scored_positions
+            ORDER BY query_id, game_id, similarity_score DESC, move_number
+        ),
+        ranked AS (
+            SELECT *, row_number() OVER (PARTITION BY query_id ORDER BY similarity_score DESC, game_id) AS rank
+            FROM best_per_game
+        )
+        SELECT query_id, position_id, game_id, move_number, similarity_score
+        FROM ranked
+        WHERE rank <= :limit
+    """, arrays, columns, scoreClause, table, filterClause);
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindPieceValues(DatabaseClient.GenericExecuteSpec spec, Board board, int pieces) {
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            if ((pieces & 1 << piece) == 0) continue;
+            String param = Board.PIECE_NAMES.get(piece);
+            // Kings are stored as a square index, everything else as a bitboard
+            spec = isKing(piece)
+                    ? spec.bind(param, Long.numberOfTrailingZeros(board.pieces(piece)))
+                    : spec.bind(param, board.pieces(piece));
         }
         return spec;
     }
 
-    private String pieceTypeToColumn(String pieceType) {
-        return switch (pieceType) {
-            case "whiteQueen" -> "white_queens";
-            case "whiteRook" -> "white_rooks";
-            case "whiteBishop" -> "white_bishops";
-            case "whiteKnight" -> "white_knights";
-            case "blackQueen" -> "black_queens";
-            case "blackRook" -> "black_rooks";
-            case "blackBishop" -> "black_bishops";
-            case "blackKnight" -> "black_knights";
-            default -> throw new IllegalArgumentException("Unknown piece type: " + pieceType);
-        };
+    private static boolean isPawn(int piece) {
+        return piece == Board.WHITE_PAWN || piece == Board.BLACK_PAWN;
+    }
+
+    private static boolean isKing(int piece) {
+        return piece == Board.WHITE_KING || piece == Board.BLACK_KING;
     }
 
-    private String similarityForBitboard(String column, long bitboard) {
+    private String similarityForBitboard(String column, String value) {
         return String.format(
-                "CASE WHEN BIT_COUNT(%s | %d) = 0 THEN 0.0 ELSE BIT_COUNT(%s & %d)::numeric / BIT_COUNT(%s | %d) END",
-                column, bitboard, column, bitboard, column, bitboard
+                "CASE WHEN BIT_COUNT(p.%s | %s) = 0 THEN 0.0 ELSE BIT_COUNT(p.%s & %s)::float / BIT_COUNT(p.%s | %s) END",
+                column, value, column, value, column, value
         );
     }
 
-    private String equalityScore(String column, Integer value) {
-        return String.format("CASE WHEN %s = %d THEN 1.0 ELSE 0.0 END", column, value);
+    private String equalityScore(String column, String value) {
+        return String.format("CASE WHEN p.%s = %s THEN 1.0 ELSE 0.0 END", column, value);
     }
 
-    private String arrayOverlapScore(String column, String bindParamName) {
-        return String.format("""
-        (
-            SELECT CARDINALITY(
-                ARRAY(
-                    SELECT UNNEST(p.%s)
-                    INTERSECT
-                    SELECT UNNEST(:%s)
-                )
-            )::float / GREATEST(CARDINALITY(:%s), 1)
-        )
-        """, column, bindParamName, bindParamName);
-    }
-
-    private Mono<SimilarityResult> enrichWithPositionAndGame(SimilarityResult result) {
-        return template.select(Position.class)
-                .matching(query(where("id").is(result.getPositionId())))
-                .one()
-                .doOnNext(result::setPosition)
-                .then(template.select(Game.class)
-                        .matching(query(where("id").is(result.getGameId())))
-                        .one()
-                        .doOnNext(result::setGame))
-                .thenReturn(result);
-    }
-
-    private List<Integer> getPieceValue(Position position, String pieceType) {
-        return switch (pieceType) {
-            case "whiteQueen" -> position.getWhiteQueens();
-            case "whiteRook" -> position.getWhiteRooks();
-            case "whiteBishop" -> position.getWhiteBishops();
-            case "whiteKnight" -> position.getWhiteKnights();
-            case "blackQueen" -> position.getBlackQueens();
-            case "blackRook" -> position.getBlackRooks();
-            case "blackBishop" -> position.getBlackBishops();
-            case "blackKnight" -> position.getBlackKnights();
-            default -> List.of();
-        };
+    private String bitboardOverlapScore(String column, String value) {
+        return String.format("BIT_COUNT(p.%s & %s)::float / BIT_COUNT(%s)", column, value, value);
+    }
+
+    private record BatchHit(int query, SimilarityResult result) {
     }
 }
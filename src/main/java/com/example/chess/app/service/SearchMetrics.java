@@ -0,0 +1,75 @@
+package com.example.chess.app.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timers for the similarity search path. Every stage is published as
+ * {@code chess.search.stage{stage=...}} and whole searches as
+ * {@code chess.search{engine=sql|memory}}, all with percentile histograms, so the
+ * stages' shares of the latency budget can be compared side by side.
+ */
+@Component
+public class SearchMetrics {
+
+    public static final String FEN_PARSE = "fen_parse";
+    public static final String PAWN_INDEX = "pawn_index";
+    public static final String SQL_BUILD = "sql_build";
+    // From subscription to the last row, minus row mapping; includes waiting for a pooled connection
+    public static final String SQL_EXECUTE = "sql_execute";
+    public static final String ROW_MAPPING = "row_mapping";
+    public static final String MEMORY_SCAN = "memory_scan";
+    public static final String DEDUP = "dedup";
+    public static final String HYDRATE_POSITIONS = "hydrate_positions";
+    public static final String HYDRATE_GAMES = "hydrate_games";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+    private final Map<String, Timer> searches = new ConcurrentHashMap<>();
+
+    public SearchMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer stage(String stage) {
+        return stages.computeIfAbsent(stage, name -> Timer.builder("chess.search.stage")
+                .description("Time spent in one stage of a similarity search")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public Timer search(String engine) {
+        return searches.computeIfAbsent(engine, name -> Timer.builder("chess.search")
+                .description("End-to-end similarity search time, excluding the result cache")
+                .tag("engine", name)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Time a Mono from subscription until it terminates or is cancelled
+     */
+    public <T> Mono<T> time(Timer timer, Mono<T> mono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return mono.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    /**
+     * Time a Flux from subscription until it terminates or is cancelled
+     */
+    public <T> Flux<T> time(Timer timer, Flux<T> flux) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return flux.doFinally(signal -> sample.stop(timer));
+        });
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.dto.request.SimilarityResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Shares in-flight similarity searches between identical requests, keyed like
+ * {@link SimilarityResultCache}. The first caller starts the search; callers arriving
+ * while it runs get its results replayed instead of starting their own. Unlike the
+ * result cache nothing is kept once the search finishes, so this still coalesces
+ * bursts while ingest keeps invalidating the cache.
+ */
+@Service
+public class SimilarityRequestCoalescer {
+
+    private final Map<SimilarityResultCache.Key, Flux<SimilarityResult>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SimilarityRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("chess.search.coalesced")
+                .description("Similarity searches served by joining an identical search already in flight")
+                .register(meterRegistry);
+    }
+
+    public Flux<SimilarityResult> coalesce(String fen, SimilarityRequest request, Supplier<Flux<SimilarityResult>> search) {
+        SimilarityResultCache.Key key = SimilarityResultCache.Key.of(fen, request);
+        return Flux.defer(() -> {
+            Flux<SimilarityResult> existing = inFlight.get(key);
+            if (existing != null) {
+                coalesced.increment();
+                return existing;
+            }
+            Flux<SimilarityResult> started = share(key, search);
+            Flux<SimilarityResult> raced = inFlight.putIfAbsent(key, started);
+            if (raced != null) {
+                coalesced.increment();
+                return raced;
+            }
+            return started;
+        });
+    }
+
+    /**
+     * Run the search once for every subscriber and replay it to late ones. It keeps
+     * running if a subscriber cancels, since others may be waiting on it, and leaves
+     * the in-flight map as soon as it terminates.
+     */
+    private Flux<SimilarityResult> share(SimilarityResultCache.Key key, Supplier<Flux<SimilarityResult>> search) {
+        AtomicReference<Flux<SimilarityResult>> self = new AtomicReference<>();
+        Flux<SimilarityResult> shared = Flux.defer(search)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+}
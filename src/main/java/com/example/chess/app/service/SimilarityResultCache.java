@@ -0,0 +1,93 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.enums.Color;
+import com.example.chess.app.dto.enums.PieceType;
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.dto.request.SimilarityResult;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-process cache of similarity search results, keyed by the piece placement
+ * of the FEN and the request parameters. Concurrent misses for the same key share a
+ * single load. Entries expire after a TTL, so results may miss games ingested within
+ * the last TTL. Flushing on ingest keeps them exact but, with ingest writing a batch
+ * every second or so, leaves hardly anything cached, so it is opt-in
+ * ({@code chess.cache.similarity.invalidate-on-ingest}).
+ */
+@Service
+@Slf4j
+public class SimilarityResultCache {
+
+    private final AsyncCache<Key, List<SimilarityResult>> cache;
+    private final boolean invalidateOnIngest;
+
+    public SimilarityResultCache(MeterRegistry meterRegistry,
+                                 @Value("${chess.cache.similarity.maximum-size:10000}") long maximumSize,
+                                 @Value("${chess.cache.similarity.ttl:10m}") Duration ttl,
+                                 @Value("${chess.cache.similarity.invalidate-on-ingest:false}") boolean invalidateOnIngest) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        this.invalidateOnIngest = invalidateOnIngest;
+
+        // Exposes cache.gets{result=hit|miss}, cache.evictions, cache.size, ...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "similarityResults");
+    }
+
+    /**
+     * Return the cached results for this search, or run {@code loader} once and cache
+     * its results. Failed loads are not cached.
+     */
+    public Flux<SimilarityResult> get(String fen, SimilarityRequest request, Supplier<Flux<SimilarityResult>> loader) {
+        Key key = Key.of(fen, request);
+
+        // suppressCancel: one subscriber cancelling must not cancel the load other callers wait on
+        return Mono.fromFuture(() -> cache.get(key, (k, executor) -> loader.get().collectList().toFuture()), true)
+                .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Called after a batch of games has been written; drops every entry when
+     * invalidation on ingest is enabled
+     */
+    public void onGamesIngested() {
+        if (invalidateOnIngest) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+
+    /**
+     * Only the piece placement takes part in similarity scoring, so side to move,
+     * castling rights and move counters are left out of the key.
+     */
+    record Key(String piecePlacement, Color color, Set<PieceType> selectedPieces,
+               Integer minElo, Integer maxElo, Integer limit) {
+
+        static Key of(String fen, SimilarityRequest request) {
+            String trimmed = fen.trim();
+            int end = trimmed.indexOf(' ');
+            return new Key(end < 0 ? trimmed : trimmed.substring(0, end),
+                    request.getColor(),
+                    Set.copyOf(request.getSelectedPieces()),
+                    request.getMinElo(),
+                    request.getMaxElo(),
+                    request.getLimit());
+        }
+    }
+}
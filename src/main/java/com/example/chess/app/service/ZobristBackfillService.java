@@ -0,0 +1,83 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.model.Position;
+import com.example.chess.app.util.ZobristHasher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+import static org.springframework.data.relational.core.query.Query.query;
+
+/**
+ * Computes zobrist_hash for positions stored before the column existed. Runs in the
+ * background after startup, one batch at a time, until no row is left without a hash.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ZobristBackfillService {
+
+    private static final int BATCH_SIZE = 5000;
+
+    private final R2dbcEntityTemplate template;
+
+    private final Sinks.Empty<Void> done = Sinks.empty();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        backfillBatch()
+                .expand(updated -> updated > 0 ? backfillBatch() : Mono.empty())
+                .reduce(0L, Long::sum)
+                .doOnSuccess(total -> {
+                    if (total > 0) log.info("Backfilled zobrist hashes for {} positions", total);
+                    done.tryEmitEmpty();
+                })
+                .doOnError(e -> {
+                    log.error("Error backfilling zobrist hashes:", e);
+                    done.tryEmitError(e);
+                })
+                .subscribe();
+    }
+
+    /**
+     * Completes once every position has a hash, or errors if the backfill failed.
+     * Replays to late subscribers.
+     */
+    public Mono<Void> completion() {
+        return done.asMono();
+    }
+
+    private Mono<Long> backfillBatch() {
+        return template.select(Position.class)
+                .matching(query(where("zobristHash").isNull()).limit(BATCH_SIZE))
+                .all()
+                .collectList()
+                .flatMap(this::updateHashes);
+    }
+
+    private Mono<Long> updateHashes(List<Position> positions) {
+        if (positions.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        return template.getDatabaseClient().sql("""
+                UPDATE positions p
+                SET zobrist_hash = v.hash
+                FROM unnest(:ids, :hashes) AS v(id, hash)
+                WHERE p.id = v.id
+                """)
+                .bind("ids", positions.stream().map(Position::getId).toArray(UUID[]::new))
+                .bind("hashes", positions.stream().map(ZobristHasher::hash).toArray(Long[]::new))
+                .fetch()
+                .rowsUpdated();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.chess.app.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for converting square indexes (0 = a1, 63 = h8) to 64-bit bitboards
+ */
+public final class BitboardUtils {
+
+    private BitboardUtils() {
+    }
+
+    /**
+     * Bitboard with a single bit set for the given square, or 0 when there is no square
+     */
+    public static long fromSquare(Integer square) {
+        return square == null ? 0L : 1L << square;
+    }
+
+    /**
+     * Bitboard with one bit set per square in the list
+     */
+    public static long fromSquares(List<Integer> squares) {
+        long bitboard = 0L;
+        if (squares != null) {
+            for (Integer square : squares) {
+                bitboard |= 1L << square;
+            }
+        }
+        return bitboard;
+    }
+
+    /**
+     * Squares of the set bits, in ascending order
+     */
+    public static List<Integer> toSquares(long bitboard) {
+        List<Integer> squares = new ArrayList<>(Long.bitCount(bitboard));
+        for (long remaining = bitboard; remaining != 0; remaining &= remaining - 1) {
+            squares.add(Long.numberOfTrailingZeros(remaining));
+        }
+        return squares;
+    }
+}
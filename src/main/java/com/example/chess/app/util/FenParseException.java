@@ -0,0 +1,33 @@
+package com.example.chess.app.util;
+
+import lombok.Getter;
+
+/**
+ * Thrown for a malformed FEN, with a machine-readable error and the character index
+ * in the input where parsing stopped.
+ */
+@Getter
+public class FenParseException extends IllegalArgumentException {
+
+    public enum Error {
+        INVALID_FIELD_COUNT,
+        INVALID_RANK_COUNT,
+        INVALID_RANK_LENGTH,
+        INVALID_PIECE,
+        INVALID_KING_COUNT,
+        PAWN_ON_BACK_RANK,
+        INVALID_SIDE_TO_MOVE,
+        INVALID_CASTLING,
+        INVALID_EN_PASSANT,
+        INVALID_CLOCK
+    }
+
+    private final Error error;
+    private final int index;
+
+    public FenParseException(Error error, int index, CharSequence fen) {
+        super("Invalid FEN string (" + error + " at index " + index + "): " + fen);
+        this.error = error;
+        this.index = index;
+    }
+}
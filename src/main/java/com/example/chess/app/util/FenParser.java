@@ -0,0 +1,225 @@
+package com.example.chess.app.util;
+
+import com.example.chess.app.model.Board;
+
+import static com.example.chess.app.util.FenParseException.Error.*;
+
+/**
+ * Single-pass FEN parser into a {@link Board}. Walks the characters once without
+ * splitting or boxing, so parsing into a reused board allocates nothing unless the
+ * input is invalid.
+ *
+ * Validation is strict: all six fields, eight ranks of exactly eight files, one king
+ * per side, no pawns on the back ranks, and an en passant square that matches the
+ * side to move.
+ */
+public final class FenParser {
+
+    private static final long BACK_RANKS = 0xFF000000000000FFL;
+
+    private FenParser() {
+    }
+
+    public static Board parse(CharSequence fen) {
+        Board board = new Board();
+        parse(fen, board);
+        return board;
+    }
+
+    /**
+     * Parse into an existing board, which is cleared first
+     */
+    public static void parse(CharSequence fen, Board board) {
+        board.clear();
+
+        int length = fen.length();
+        int i = 0;
+        while (i < length && fen.charAt(i) == ' ') i++;
+        while (length > i && fen.charAt(length - 1) == ' ') length--;
+
+        i = parsePiecePlacement(fen, i, length, board);
+        i = expectSpace(fen, i, length);
+        i = parseSideToMove(fen, i, length, board);
+        i = expectSpace(fen, i, length);
+        i = parseCastling(fen, i, length, board);
+        i = expectSpace(fen, i, length);
+        i = parseEnPassant(fen, i, length, board);
+        i = expectSpace(fen, i, length);
+
+        int halfMoveEnd = numberEnd(fen, i, length);
+        board.setHalfMoveClock(parseNumber(fen, i, halfMoveEnd));
+        i = expectSpace(fen, halfMoveEnd, length);
+
+        int fullMoveEnd = numberEnd(fen, i, length);
+        int fullMoveNumber = parseNumber(fen, i, fullMoveEnd);
+        if (fullMoveNumber < 1) {
+            throw new FenParseException(INVALID_CLOCK, i, fen);
+        }
+        board.setFullMoveNumber(fullMoveNumber);
+
+        if (fullMoveEnd != length) {
+            throw new FenParseException(INVALID_FIELD_COUNT, fullMoveEnd, fen);
+        }
+    }
+
+    private static int parsePiecePlacement(CharSequence fen, int i, int length, Board board) {
+        // FEN lists rank 8 first, from file a to h
+        int rank = 7;
+        int file = 0;
+        boolean lastWasDigit = false;
+
+        for (; i < length; i++) {
+            char c = fen.charAt(i);
+            if (c == ' ') {
+                break;
+            }
+            if (c == '/') {
+                if (file != 8 || rank == 0) {
+                    throw new FenParseException(file != 8 ? INVALID_RANK_LENGTH : INVALID_RANK_COUNT, i, fen);
+                }
+                rank--;
+                file = 0;
+                lastWasDigit = false;
+                continue;
+            }
+            if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (lastWasDigit || file > 8) {
+                    throw new FenParseException(INVALID_RANK_LENGTH, i, fen);
+                }
+                lastWasDigit = true;
+                continue;
+            }
+
+            int piece = pieceIndex(c);
+            if (piece < 0) {
+                throw new FenParseException(INVALID_PIECE, i, fen);
+            }
+            if (file >= 8) {
+                throw new FenParseException(INVALID_RANK_LENGTH, i, fen);
+            }
+            board.addPiece(piece, rank * 8 + file);
+            file++;
+            lastWasDigit = false;
+        }
+
+        if (rank != 0) {
+            throw new FenParseException(INVALID_RANK_COUNT, i, fen);
+        }
+        if (file != 8) {
+            throw new FenParseException(INVALID_RANK_LENGTH, i, fen);
+        }
+        if (Long.bitCount(board.pieces(Board.WHITE_KING)) != 1 || Long.bitCount(board.pieces(Board.BLACK_KING)) != 1) {
+            throw new FenParseException(INVALID_KING_COUNT, i, fen);
+        }
+        if (((board.pieces(Board.WHITE_PAWN) | board.pieces(Board.BLACK_PAWN)) & BACK_RANKS) != 0) {
+            throw new FenParseException(PAWN_ON_BACK_RANK, i, fen);
+        }
+        return i;
+    }
+
+    private static int parseSideToMove(CharSequence fen, int i, int length, Board board) {
+        if (i + 1 > length || (i + 1 < length && fen.charAt(i + 1) != ' ')) {
+            throw new FenParseException(INVALID_SIDE_TO_MOVE, i, fen);
+        }
+        switch (fen.charAt(i)) {
+            case 'w' -> board.setWhiteToMove(true);
+            case 'b' -> board.setWhiteToMove(false);
+            default -> throw new FenParseException(INVALID_SIDE_TO_MOVE, i, fen);
+        }
+        return i + 1;
+    }
+
+    private static int parseCastling(CharSequence fen, int i, int length, Board board) {
+        if (i < length && fen.charAt(i) == '-') {
+            return i + 1;
+        }
+
+        int rights = 0;
+        int start = i;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            int right = switch (fen.charAt(i)) {
+                case 'K' -> Board.WHITE_KINGSIDE;
+                case 'Q' -> Board.WHITE_QUEENSIDE;
+                case 'k' -> Board.BLACK_KINGSIDE;
+                case 'q' -> Board.BLACK_QUEENSIDE;
+                default -> throw new FenParseException(INVALID_CASTLING, i, fen);
+            };
+            if ((rights & right) != 0) {
+                throw new FenParseException(INVALID_CASTLING, i, fen);
+            }
+            rights |= right;
+        }
+        if (i == start) {
+            throw new FenParseException(INVALID_CASTLING, i, fen);
+        }
+        board.setCastlingRights(rights);
+        return i;
+    }
+
+    private static int parseEnPassant(CharSequence fen, int i, int length, Board board) {
+        if (i < length && fen.charAt(i) == '-') {
+            return i + 1;
+        }
+        if (i + 2 > length) {
+            throw new FenParseException(INVALID_EN_PASSANT, i, fen);
+        }
+
+        char fileChar = fen.charAt(i);
+        char rankChar = fen.charAt(i + 1);
+        // The target square is behind a pawn that just advanced two squares
+        char expectedRank = board.isWhiteToMove() ? '6' : '3';
+        if (fileChar < 'a' || fileChar > 'h' || rankChar != expectedRank) {
+            throw new FenParseException(INVALID_EN_PASSANT, i, fen);
+        }
+        board.setEnPassantSquare((rankChar - '1') * 8 + (fileChar - 'a'));
+        return i + 2;
+    }
+
+    private static int expectSpace(CharSequence fen, int i, int length) {
+        if (i >= length || fen.charAt(i) != ' ') {
+            throw new FenParseException(INVALID_FIELD_COUNT, i, fen);
+        }
+        return i + 1;
+    }
+
+    private static int numberEnd(CharSequence fen, int i, int length) {
+        int end = i;
+        while (end < length && fen.charAt(end) != ' ') end++;
+        return end;
+    }
+
+    private static int parseNumber(CharSequence fen, int start, int end) {
+        // Up to 6 digits keeps the value well inside int range
+        if (start == end || end - start > 6) {
+            throw new FenParseException(start == end ? INVALID_FIELD_COUNT : INVALID_CLOCK, start, fen);
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = fen.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new FenParseException(INVALID_CLOCK, i, fen);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int pieceIndex(char c) {
+        return switch (c) {
+            case 'P' -> Board.WHITE_PAWN;
+            case 'N' -> Board.WHITE_KNIGHT;
+            case 'B' -> Board.WHITE_BISHOP;
+            case 'R' -> Board.WHITE_ROOK;
+            case 'Q' -> Board.WHITE_QUEEN;
+            case 'K' -> Board.WHITE_KING;
+            case 'p' -> Board.BLACK_PAWN;
+            case 'n' -> Board.BLACK_KNIGHT;
+            case 'b' -> Board.BLACK_BISHOP;
+            case 'r' -> Board.BLACK_ROOK;
+            case 'q' -> Board.BLACK_QUEEN;
+            case 'k' -> Board.BLACK_KING;
+            default -> -1;
+        };
+    }
+}
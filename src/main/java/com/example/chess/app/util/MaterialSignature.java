@@ -0,0 +1,89 @@
+package com.example.chess.app.util;
+
+import com.example.chess.app.model.Board;
+
+import java.util.stream.IntStream;
+
+/**
+ * Piece counts per type and color packed into a 24-bit int: 4 bits for pawns and 2
+ * bits each for knights, bishops, rooks and queens (capped at 3), white in the low
+ * 12 bits and black in the high 12. Kings are always present and left out.
+ *
+ * Positions with the same signature share a bucket; the distance between two buckets
+ * is the sum of the differences of their counts. Signatures are persisted, so the
+ * layout must never change.
+ */
+public final class MaterialSignature {
+
+    // Pieces in field order, with the width and cap of each field
+    private static final int[] PIECES = {
+            Board.WHITE_PAWN, Board.WHITE_KNIGHT, Board.WHITE_BISHOP, Board.WHITE_ROOK, Board.WHITE_QUEEN,
+            Board.BLACK_PAWN, Board.BLACK_KNIGHT, Board.BLACK_BISHOP, Board.BLACK_ROOK, Board.BLACK_QUEEN};
+    private static final int[] SHIFTS = {0, 4, 6, 8, 10, 12, 16, 18, 20, 22};
+    private static final int[] MAX_COUNTS = {8, 3, 3, 3, 3, 8, 3, 3, 3, 3};
+
+    private static final String[] COLUMNS = {
+            "white_pawns", "white_knights", "white_bishops", "white_rooks", "white_queens",
+            "black_pawns", "black_knights", "black_bishops", "black_rooks", "black_queens"};
+
+    /**
+     * The same packing as {@link #of(Board)} as a SQL expression over the piece
+     * columns of positions, for filling rows stored before the column existed
+     */
+    public static final String SQL = buildSql();
+
+    private MaterialSignature() {
+    }
+
+    public static int of(Board board) {
+        int signature = 0;
+        for (int field = 0; field < PIECES.length; field++) {
+            int count = Math.min(Long.bitCount(board.pieces(PIECES[field])), MAX_COUNTS[field]);
+            signature |= count << SHIFTS[field];
+        }
+        return signature;
+    }
+
+    /**
+     * Every valid signature exactly {@code radius} away from {@code signature}, sorted.
+     * Radius 0 is the signature itself.
+     */
+    public static int[] ring(int signature, int radius) {
+        int[] counts = new int[PIECES.length];
+        for (int field = 0; field < PIECES.length; field++) {
+            counts[field] = count(signature, field);
+        }
+
+        IntStream.Builder ring = IntStream.builder();
+        collect(counts, 0, radius, 0, ring);
+        return ring.build().sorted().toArray();
+    }
+
+    // Spend the remaining distance on the fields from `field` onward, in both directions
+    private static void collect(int[] counts, int field, int remaining, int signature, IntStream.Builder ring) {
+        if (field == PIECES.length) {
+            if (remaining == 0) ring.add(signature);
+            return;
+        }
+        for (int delta = -remaining; delta <= remaining; delta++) {
+            int count = counts[field] + delta;
+            if (count < 0 || count > MAX_COUNTS[field]) continue;
+            collect(counts, field + 1, remaining - Math.abs(delta), signature | count << SHIFTS[field], ring);
+        }
+    }
+
+    private static int count(int signature, int field) {
+        int width = field % 5 == 0 ? 4 : 2;
+        return signature >>> SHIFTS[field] & (1 << width) - 1;
+    }
+
+    private static String buildSql() {
+        StringBuilder sql = new StringBuilder();
+        for (int field = 0; field < PIECES.length; field++) {
+            if (field > 0) sql.append(" | ");
+            sql.append("(LEAST(BIT_COUNT(COALESCE(").append(COLUMNS[field]).append(", 0)), ")
+                    .append(MAX_COUNTS[field]).append(")::int << ").append(SHIFTS[field]).append(')');
+        }
+        return sql.toString();
+    }
+}
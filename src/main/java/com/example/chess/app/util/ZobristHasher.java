@@ -0,0 +1,67 @@
+package com.example.chess.app.util;
+
+import com.example.chess.app.model.Board;
+import com.example.chess.app.model.Position;
+
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit Zobrist hashing of a position: pieces, side to move, castling rights and
+ * en passant file. Move counters are ignored, so transpositions hash the same.
+ *
+ * Hashes are persisted, so the keys come from a fixed seed and must never change.
+ */
+public final class ZobristHasher {
+
+    private static final long SEED = 0x5A0B21575EEDL;
+
+    private static final long[][] PIECE_SQUARE = new long[Board.PIECE_TYPES][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECE_SQUARE[piece][square] = random.nextLong();
+            }
+        }
+        // No castling rights contributes nothing
+        for (int rights = 1; rights < CASTLING.length; rights++) {
+            CASTLING[rights] = random.nextLong();
+        }
+        for (int file = 0; file < EN_PASSANT_FILE.length; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private ZobristHasher() {
+    }
+
+    public static long hash(Position position) {
+        return hash(Board.from(position));
+    }
+
+    public static long hash(Board board) {
+        long hash = 0L;
+        for (int piece = 0; piece < Board.PIECE_TYPES; piece++) {
+            long remaining = board.pieces(piece);
+            while (remaining != 0) {
+                hash ^= PIECE_SQUARE[piece][Long.numberOfTrailingZeros(remaining)];
+                remaining &= remaining - 1;
+            }
+        }
+
+        if (!board.isWhiteToMove()) {
+            hash ^= BLACK_TO_MOVE;
+        }
+        hash ^= CASTLING[board.getCastlingRights() & 15];
+        if (board.getEnPassantSquare() != Board.NO_SQUARE) {
+            hash ^= EN_PASSANT_FILE[board.getEnPassantSquare() & 7];
+        }
+
+        return hash;
+    }
+}
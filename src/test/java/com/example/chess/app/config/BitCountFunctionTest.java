@@ -0,0 +1,83 @@
+package com.example.chess.app.config;
+
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the SWAR bit_count installed on servers before 14 agrees with the
+ * native one, including the sign bit. Needs Docker; skipped without it.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BitCountFunctionTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private DatabaseClient databaseClient;
+
+    @BeforeAll
+    void createFunctions() {
+        databaseClient = DatabaseClient.create(ConnectionFactories.get(String.format("r2dbc:postgresql://%s:%s@%s:%d/%s",
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName())));
+
+        databaseClient.sql(DatabaseInitializer.bitCountFunction("native_bit_count", true)).then()
+                .then(databaseClient.sql(DatabaseInitializer.bitCountFunction("swar_bit_count", false)).then())
+                .block();
+    }
+
+    @Test
+    void swarAndNativeAgreeOnEdgeValues() {
+        List<Long> values = new ArrayList<>(List.of(0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE + 1));
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            values.add(1L << bit);
+            values.add(~(1L << bit));
+        }
+
+        assertCountsMatch(values);
+    }
+
+    @Test
+    void swarAndNativeAgreeOnRandomValues() {
+        Random random = new Random(42);
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add(random.nextLong());
+        }
+
+        assertCountsMatch(values);
+    }
+
+    private void assertCountsMatch(List<Long> values) {
+        List<int[]> counts = databaseClient.sql("""
+                SELECT native_bit_count(v) AS native, swar_bit_count(v) AS swar
+                FROM unnest(CAST(:values AS bigint[])) WITH ORDINALITY AS t(v, i)
+                ORDER BY i
+                """)
+                .bind("values", values.toArray(new Long[0]))
+                .map(row -> new int[]{row.get("native", Integer.class), row.get("swar", Integer.class)})
+                .all()
+                .collectList()
+                .block();
+
+        assertThat(counts).hasSameSizeAs(values);
+        for (int i = 0; i < values.size(); i++) {
+            long value = values.get(i);
+            assertThat(counts.get(i)[0]).as("native bit_count of %d", value).isEqualTo(Long.bitCount(value));
+            assertThat(counts.get(i)[1]).as("SWAR bit_count of %d", value).isEqualTo(Long.bitCount(value));
+        }
+    }
+}
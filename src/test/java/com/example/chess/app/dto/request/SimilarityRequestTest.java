@@ -0,0 +1,120 @@
+package com.example.chess.app.dto.request;
+
+import com.example.chess.app.dto.enums.Color;
+import com.example.chess.app.dto.enums.PieceType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimilarityRequestTest {
+
+    @Test
+    void resolvesSelectedPiecesForTheColor() {
+        SimilarityRequest request = request(5);
+
+        request.toDomain();
+
+        assertThat(request.getPieceTypes()).containsExactlyInAnyOrder("blackPawn", "blackKnight");
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(ints = {0, -1, Integer.MIN_VALUE})
+    void rejectsALimitBelowOne(Integer limit) {
+        assertRejected(request(limit), "limit");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {101, 2_000_000_000, Integer.MAX_VALUE})
+    void rejectsALimitAboveTheMaximum(int limit) {
+        SimilarityRequest request = request(limit);
+
+        assertThatThrownBy(() -> request.toDomain(100))
+                .isInstanceOfSatisfying(InvalidRequestException.class,
+                        e -> assertThat(e.getArgument()).isEqualTo("limit"));
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(ints = {0, 101, Integer.MAX_VALUE})
+    void checkLimitRejectsOutOfRange(Integer limit) {
+        assertThatThrownBy(() -> SimilarityRequest.checkLimit(limit, 100))
+                .isInstanceOfSatisfying(InvalidRequestException.class,
+                        e -> assertThat(e.getArgument()).isEqualTo("limit"));
+    }
+
+    @Test
+    void checkLimitReturnsAnAcceptedLimit() {
+        assertThat(SimilarityRequest.checkLimit(100, 100)).isEqualTo(100);
+    }
+
+    @Test
+    void acceptsTheMaximumLimit() {
+        SimilarityRequest request = request(100);
+
+        request.toDomain(100);
+
+        assertThat(request.getPieceTypes()).isNotEmpty();
+    }
+
+    @Test
+    void defaultMaximumAppliesWithoutOne() {
+        assertRejected(request(SimilarityRequest.DEFAULT_MAX_LIMIT + 1), "limit");
+    }
+
+    @Test
+    void rejectsAMissingMinElo() {
+        SimilarityRequest request = request(5);
+        request.setMinElo(null);
+
+        assertRejected(request, "minElo");
+    }
+
+    @Test
+    void rejectsAMissingMaxElo() {
+        SimilarityRequest request = request(5);
+        request.setMaxElo(null);
+
+        assertRejected(request, "maxElo");
+    }
+
+    @Test
+    void rejectsAnInvertedEloRange() {
+        SimilarityRequest request = request(5);
+        request.setMinElo(2000);
+        request.setMaxElo(1500);
+
+        assertRejected(request, "minElo");
+    }
+
+    @Test
+    void acceptsASingleEloValue() {
+        SimilarityRequest request = request(5);
+        request.setMinElo(1500);
+        request.setMaxElo(1500);
+
+        request.toDomain();
+
+        assertThat(request.getPieceTypes()).isNotEmpty();
+    }
+
+    private static void assertRejected(SimilarityRequest request, String argument) {
+        assertThatThrownBy(request::toDomain)
+                .isInstanceOfSatisfying(InvalidRequestException.class,
+                        e -> assertThat(e.getArgument()).isEqualTo(argument));
+    }
+
+    private static SimilarityRequest request(Integer limit) {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(Color.BLACK);
+        request.setSelectedPieces(Set.of(PieceType.PAWN, PieceType.KNIGHT));
+        request.setLimit(limit);
+        return request;
+    }
+}
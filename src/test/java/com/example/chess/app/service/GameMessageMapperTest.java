@@ -0,0 +1,70 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.dto.GameDTO;
+import com.example.chess.app.dto.GameMetadataDTO;
+import com.example.chess.app.dto.PositionDTO;
+import com.example.chess.app.model.Position;
+import com.example.chess.app.service.GameMessageMapper.MappedGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GameMessageMapperTest {
+
+    private final GameMessageMapper mapper = new GameMessageMapper();
+
+    @Test
+    void keepsTheMessageGameId() {
+        GameDTO game = game("lichess-abc", 1500);
+
+        assertThat(mapper.map(game).game().getId()).isEqualTo("lichess-abc");
+    }
+
+    @Test
+    void derivesTheSameIdForTheSameContent() {
+        MappedGame first = mapper.map(game(null, 1500));
+        MappedGame redelivered = mapper.map(game(null, 1500));
+
+        assertThat(first.game().getId()).isNotBlank().isEqualTo(redelivered.game().getId());
+        assertThat(first.positions()).extracting(Position::getId)
+                .containsExactlyElementsOf(redelivered.positions().stream().map(Position::getId).toList());
+        assertThat(first.positions()).extracting(Position::getGameId).containsOnly(first.game().getId());
+    }
+
+    @Test
+    void derivesDifferentIdsForDifferentContent() {
+        assertThat(mapper.map(game("", 1500)).game().getId())
+                .isNotEqualTo(mapper.map(game("", 1600)).game().getId());
+    }
+
+    @Test
+    void leavesTheMessageUnchanged() {
+        GameDTO game = game(null, 1500);
+
+        mapper.map(game);
+
+        assertThat(game.getGameMetadata().getGameId()).isNull();
+    }
+
+    private static GameDTO game(String gameId, int whiteElo) {
+        GameMetadataDTO metadata = new GameMetadataDTO();
+        metadata.setGameId(gameId);
+        metadata.setWhiteElo(whiteElo);
+        metadata.setBlackElo(1700);
+        metadata.setResult("1-0");
+        metadata.setGameType("blitz");
+
+        PositionDTO start = new PositionDTO();
+        start.setMoveNumber(1);
+        start.setFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        start.setWhiteKing(4);
+        start.setBlackKing(60);
+
+        GameDTO game = new GameDTO();
+        game.setGameMetadata(metadata);
+        game.setPositions(List.of(start));
+        return game;
+    }
+}
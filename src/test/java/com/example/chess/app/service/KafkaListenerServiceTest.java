@@ -0,0 +1,68 @@
+package com.example.chess.app.service;
+
+import io.r2dbc.spi.R2dbcBadGrammarException;
+import io.r2dbc.spi.R2dbcDataIntegrityViolationException;
+import io.r2dbc.spi.R2dbcNonTransientResourceException;
+import io.r2dbc.spi.R2dbcTransientResourceException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.BadSqlGrammarException;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaListenerServiceTest {
+
+    @Test
+    void valuesRejectedByPostgresAreDataErrors() {
+        assertThat(KafkaListenerService.isDataError(new DataIntegrityViolationException("duplicate",
+                new R2dbcDataIntegrityViolationException("duplicate key", "23505")))).isTrue();
+        assertThat(KafkaListenerService.isDataError(new RuntimeException(
+                new R2dbcNonTransientResourceException("value too long for type character varying(20)", "22001"))))
+                .isTrue();
+        assertThat(KafkaListenerService.isDataError(new InvalidGameMessageException("no positions",
+                new NullPointerException()))).isTrue();
+    }
+
+    @Test
+    void failuresOutsideTheRecordsAreNotDataErrors() {
+        assertThat(KafkaListenerService.isDataError(new BadSqlGrammarException("insert", "INSERT INTO positions",
+                new R2dbcBadGrammarException("column \"zobrist_hash\" does not exist", "42703")))).isFalse();
+        assertThat(KafkaListenerService.isDataError(new R2dbcTransientResourceException("connection lost", "08006")))
+                .isFalse();
+        assertThat(KafkaListenerService.isDataError(new TimeoutException())).isFalse();
+        assertThat(KafkaListenerService.isDataError(new IllegalStateException("unexpected"))).isFalse();
+    }
+
+    @Test
+    void everyRecordFailingTheSameWayIsSystemic() {
+        List<Throwable> errors = List.of(duplicate(), duplicate(), duplicate());
+
+        assertThat(KafkaListenerService.isSystemic(errors, 3, 3)).isTrue();
+    }
+
+    @Test
+    void someRecordsSucceedingIsNotSystemic() {
+        assertThat(KafkaListenerService.isSystemic(List.of(duplicate(), duplicate()), 3, 3)).isFalse();
+    }
+
+    @Test
+    void differentCausesAreNotSystemic() {
+        List<Throwable> errors = List.of(duplicate(), duplicate(),
+                new InvalidGameMessageException("no positions", new NullPointerException()));
+
+        assertThat(KafkaListenerService.isSystemic(errors, 3, 3)).isFalse();
+    }
+
+    @Test
+    void smallBatchesAreNeverSystemic() {
+        assertThat(KafkaListenerService.isSystemic(List.of(duplicate(), duplicate()), 2, 3)).isFalse();
+    }
+
+    private static Throwable duplicate() {
+        return new DataIntegrityViolationException("duplicate",
+                new R2dbcDataIntegrityViolationException("duplicate key", "23505"));
+    }
+}
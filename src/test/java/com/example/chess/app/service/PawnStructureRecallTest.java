@@ -0,0 +1,168 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.config.PartitionManager;
+import com.example.chess.app.dto.enums.Color;
+import com.example.chess.app.dto.enums.PieceType;
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.dto.request.SimilarityResult;
+import com.example.chess.app.model.Position;
+import com.example.chess.app.util.MaterialSignature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares pawn searches restricted to the nearest pawn structures against the same
+ * searches scoring every structure. Needs Docker; skipped without it.
+ */
+@SpringBootTest(properties = {
+        "chess.ingest.kafka.enabled=false",
+        "chess.db.indexes.build-on-startup=false",
+        // Positions are seeded without boards, so score them directly
+        "chess.similarity.score-distinct-boards=false",
+        "chess.similarity.pawn-index.candidates=64"})
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PawnStructureRecallTest {
+
+    private static final int QUERIES = 30;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void r2dbcProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> String.format("r2dbc:postgresql://%s:%s@%s:%d/%s",
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName()));
+    }
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private PositionMatchingService matchingService;
+
+    @Autowired
+    private PawnStructureIndex pawnIndex;
+
+    @Autowired
+    private InMemorySimilarityEngine similarityEngine;
+
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private PartitionManager partitionManager;
+
+    @Autowired
+    private BoardPositionBackfillService boardPositions;
+
+    // The same search with the pawn structure index disabled
+    private PositionMatchingService unrestricted;
+
+    private List<Position> queries;
+
+    @BeforeAll
+    void seed() {
+        // 100k positions of 5k games, each color with six pawns dropped on ranks 2-7
+        String pawns = "(1::bigint << (8 + (random() * 47)::int))";
+        String structure = String.join(" | ", pawns, pawns, pawns, pawns, pawns, pawns);
+        databaseClient.sql("""
+                SELECT setseed(0.24);
+                INSERT INTO games (id, result, white_elo, black_elo, game_type)
+                SELECT 'game-' || i, '1-0', 500 + (i * 7919) %% 2300, 500 + (i * 104729) %% 2300, 'blitz'
+                FROM generate_series(1, 5000) AS i;
+                INSERT INTO positions (id, game_id, move_number, white_king, black_king,
+                                       white_pawns, black_pawns, min_elo, max_elo, game_type)
+                SELECT gen_random_uuid(), g.id, i / 5000,
+                       (random() * 63)::int, (random() * 63)::int, %s, %s,
+                       LEAST(g.white_elo, g.black_elo), GREATEST(g.white_elo, g.black_elo), g.game_type
+                FROM generate_series(1, 100000) AS i
+                JOIN games g ON g.id = 'game-' || (1 + i %% 5000);
+                """.formatted(structure, structure))
+                .then()
+                .then(databaseClient.sql("UPDATE positions SET material_signature = " + MaterialSignature.SQL).then())
+                .then(databaseClient.sql("ANALYZE positions").then())
+                .block();
+
+        // The index loaded the empty table at startup; adding is idempotent
+        pawnIndex.addAll(template.select(Position.class).all().collectList().block());
+        assertThat(pawnIndex.isReady()).isTrue();
+
+        unrestricted = new PositionMatchingService(template, similarityEngine, searchMetrics, partitionManager,
+                new PawnStructureIndex(databaseClient, false, 0), boardPositions, 4, false);
+        queries = template.select(Position.class).matching(Query.empty().limit(QUERIES)).all().collectList().block();
+    }
+
+    @Test
+    void restrictedSearchRecallsTheUnrestrictedScores() {
+        SimilarityRequest request = pawnRequest(0, 3500);
+
+        int matched = 0;
+        int ranked = 0;
+        for (Position query : queries) {
+            List<SimilarityResult> approximate = search(matchingService, query, request);
+            List<SimilarityResult> exact = search(unrestricted, query, request);
+
+            assertThat(approximate).hasSizeGreaterThanOrEqualTo(exact.size());
+            // Scores rather than games, since games with equal scores may rank either way
+            for (int rank = 0; rank < exact.size(); rank++) {
+                ranked++;
+                if (approximate.get(rank).getSimilarityScore() >= exact.get(rank).getSimilarityScore() - 1e-9) {
+                    matched++;
+                }
+            }
+        }
+
+        assertThat(ranked).isPositive();
+        assertThat((double) matched / ranked).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void narrowEloRangeStillFillsTheLimit() {
+        // Few of the nearest structures have a game in this range
+        SimilarityRequest request = pawnRequest(2000, 2100);
+
+        for (Position query : queries) {
+            List<SimilarityResult> approximate = search(matchingService, query, request);
+            List<SimilarityResult> exact = search(unrestricted, query, request);
+
+            assertThat(approximate).hasSizeGreaterThanOrEqualTo(exact.size());
+        }
+    }
+
+    private static SimilarityRequest pawnRequest(int minElo, int maxElo) {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(Color.WHITE);
+        request.setSelectedPieces(Set.of(PieceType.PAWN));
+        request.setMinElo(minElo);
+        request.setMaxElo(maxElo);
+        request.setLimit(10);
+        request.toDomain();
+        return request;
+    }
+
+    private static List<SimilarityResult> search(PositionMatchingService service, Position query,
+                                                 SimilarityRequest request) {
+        return service.findSimilarPositions(query, request).collectList().block();
+    }
+}
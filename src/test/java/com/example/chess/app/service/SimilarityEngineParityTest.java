@@ -0,0 +1,214 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.config.PartitionManager;
+import com.example.chess.app.dto.enums.Color;
+import com.example.chess.app.dto.enums.PieceType;
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.dto.request.SimilarityResult;
+import com.example.chess.app.model.Position;
+import com.example.chess.app.util.MaterialSignature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Runs the same searches through the in-memory engine and the SQL path and expects the
+ * same games, positions and scores. Every seeded position has the same material, so
+ * the SQL path's material buckets hold every candidate, and the pawn structure index
+ * is disabled: the cases where the engines intentionally differ. Needs Docker;
+ * skipped without it.
+ */
+@SpringBootTest(properties = {
+        "chess.ingest.kafka.enabled=false",
+        "chess.db.indexes.build-on-startup=false",
+        "chess.similarity.engine=memory",
+        "chess.similarity.pawn-index.enabled=false",
+        // Positions are seeded without boards, so score them directly
+        "chess.similarity.score-distinct-boards=false"})
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SimilarityEngineParityTest {
+
+    private static final int GAMES = 1000;
+    private static final int POSITIONS_PER_GAME = 20;
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void r2dbcProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> String.format("r2dbc:postgresql://%s:%s@%s:%d/%s",
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName()));
+    }
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private InMemorySimilarityEngine similarityEngine;
+
+    @Autowired
+    private SearchMetrics searchMetrics;
+
+    @Autowired
+    private PartitionManager partitionManager;
+
+    @Autowired
+    private BoardPositionBackfillService boardPositions;
+
+    private PositionMatchingService sqlSearch;
+
+    private final List<Position> corpus = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        // The startup load read the empty tables; wait for it so it cannot load the seeded rows again
+        await().atMost(Duration.ofSeconds(30)).until(similarityEngine::isReady);
+
+        Random random = new Random(42);
+        List<String> gameIds = new ArrayList<>();
+        List<Integer> whiteElos = new ArrayList<>();
+        List<Integer> blackElos = new ArrayList<>();
+        for (int game = 0; game < GAMES; game++) {
+            // Zero-padded so game ids sort the same in Java and Postgres
+            String gameId = String.format("game-%05d", game);
+            int whiteElo = 800 + random.nextInt(1600);
+            int blackElo = 800 + random.nextInt(1600);
+            gameIds.add(gameId);
+            whiteElos.add(whiteElo);
+            blackElos.add(blackElo);
+
+            List<Position> positions = new ArrayList<>();
+            for (int move = 1; move <= POSITIONS_PER_GAME; move++) {
+                positions.add(Position.builder()
+                        .id(UUID.nameUUIDFromBytes((gameId + ":" + move).getBytes()))
+                        .gameId(gameId)
+                        .moveNumber(move)
+                        .whiteKing(random.nextInt(64))
+                        .blackKing(random.nextInt(64))
+                        // Six pawns per side on ranks 2-7 and two white knights, so every position shares a bucket
+                        .whitePawns(randomSquares(random, 6, 8, 56))
+                        .blackPawns(randomSquares(random, 6, 8, 56))
+                        .whiteKnights(randomSquares(random, 2, 0, 64))
+                        .minElo(Math.min(whiteElo, blackElo))
+                        .maxElo(Math.max(whiteElo, blackElo))
+                        .gameType("blitz")
+                        .build());
+            }
+            corpus.addAll(positions);
+            similarityEngine.addAll(positions, whiteElo, blackElo);
+        }
+
+        databaseClient.sql("""
+                INSERT INTO games (id, result, white_elo, black_elo, game_type)
+                SELECT id, '1-0', white_elo, black_elo, 'blitz'
+                FROM unnest(CAST(:ids AS varchar[]), CAST(:whiteElos AS int[]), CAST(:blackElos AS int[]))
+                    AS g(id, white_elo, black_elo)
+                """)
+                .bind("ids", gameIds.toArray(new String[0]))
+                .bind("whiteElos", whiteElos.toArray(new Integer[0]))
+                .bind("blackElos", blackElos.toArray(new Integer[0]))
+                .then()
+                .then(databaseClient.sql("""
+                        INSERT INTO positions (id, game_id, move_number, white_king, black_king,
+                                               white_pawns, black_pawns, white_knights, min_elo, max_elo, game_type)
+                        SELECT id, game_id, move_number, white_king, black_king,
+                               white_pawns, black_pawns, white_knights, min_elo, max_elo, 'blitz'
+                        FROM unnest(CAST(:ids AS uuid[]), CAST(:gameIds AS varchar[]), CAST(:moveNumbers AS int[]),
+                                    CAST(:whiteKings AS int[]), CAST(:blackKings AS int[]),
+                                    CAST(:whitePawns AS bigint[]), CAST(:blackPawns AS bigint[]),
+                                    CAST(:whiteKnights AS bigint[]),
+                                    CAST(:minElos AS int[]), CAST(:maxElos AS int[]))
+                            AS p(id, game_id, move_number, white_king, black_king,
+                                 white_pawns, black_pawns, white_knights, min_elo, max_elo)
+                        """)
+                        .bind("ids", corpus.stream().map(p -> p.getId().toString()).toArray(String[]::new))
+                        .bind("gameIds", corpus.stream().map(Position::getGameId).toArray(String[]::new))
+                        .bind("moveNumbers", corpus.stream().map(Position::getMoveNumber).toArray(Integer[]::new))
+                        .bind("whiteKings", corpus.stream().map(Position::getWhiteKing).toArray(Integer[]::new))
+                        .bind("blackKings", corpus.stream().map(Position::getBlackKing).toArray(Integer[]::new))
+                        .bind("whitePawns", corpus.stream().map(Position::getWhitePawns).toArray(Long[]::new))
+                        .bind("blackPawns", corpus.stream().map(Position::getBlackPawns).toArray(Long[]::new))
+                        .bind("whiteKnights", corpus.stream().map(Position::getWhiteKnights).toArray(Long[]::new))
+                        .bind("minElos", corpus.stream().map(Position::getMinElo).toArray(Integer[]::new))
+                        .bind("maxElos", corpus.stream().map(Position::getMaxElo).toArray(Integer[]::new))
+                        .then())
+                .then(databaseClient.sql("UPDATE positions SET material_signature = " + MaterialSignature.SQL).then())
+                .then(databaseClient.sql("ANALYZE positions").then())
+                .block();
+
+        sqlSearch = new PositionMatchingService(template, new InMemorySimilarityEngine(databaseClient, searchMetrics, "sql"),
+                searchMetrics, partitionManager, new PawnStructureIndex(databaseClient, false, 0), boardPositions, 4, false);
+    }
+
+    static Stream<Arguments> requests() {
+        return Stream.of(
+                Arguments.of(Color.WHITE, EnumSet.of(PieceType.PAWN), 500, 2500),
+                Arguments.of(Color.BLACK, EnumSet.of(PieceType.PAWN), 1800, 2000),
+                Arguments.of(Color.WHITE, EnumSet.of(PieceType.PAWN, PieceType.KNIGHT), 500, 2500),
+                Arguments.of(Color.BLACK, EnumSet.of(PieceType.KING, PieceType.PAWN), 500, 2500));
+    }
+
+    @ParameterizedTest
+    @MethodSource("requests")
+    void memoryAndSqlReturnTheSameResults(Color color, Set<PieceType> pieces, int minElo, int maxElo) {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(color);
+        request.setSelectedPieces(pieces);
+        request.setMinElo(minElo);
+        request.setMaxElo(maxElo);
+        request.setLimit(10);
+        request.toDomain();
+
+        int compared = 0;
+        for (int query = 0; query < corpus.size(); query += corpus.size() / 25) {
+            Position position = corpus.get(query);
+            List<SimilarityResult> memory = similarityEngine.findSimilarPositions(position, request).collectList().block();
+            List<SimilarityResult> sql = sqlSearch.findSimilarPositions(position, request).collectList().block();
+
+            compared += sql.size();
+            assertThat(memory).extracting(SimilarityResult::getGameId, SimilarityResult::getPositionId)
+                    .as("results for %s", position.getId())
+                    .containsExactlyElementsOf(sql.stream()
+                            .map(result -> tuple(result.getGameId(), result.getPositionId()))
+                            .toList());
+            for (int rank = 0; rank < memory.size(); rank++) {
+                assertThat(memory.get(rank).getSimilarityScore()).isCloseTo(sql.get(rank).getSimilarityScore(),
+                        offset(1e-9));
+            }
+        }
+        assertThat(compared).isPositive();
+    }
+
+    private static long randomSquares(Random random, int count, int from, int to) {
+        long squares = 0L;
+        while (Long.bitCount(squares) < count) {
+            squares |= 1L << from + random.nextInt(to - from);
+        }
+        return squares;
+    }
+}
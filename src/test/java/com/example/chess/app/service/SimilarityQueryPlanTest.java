@@ -0,0 +1,187 @@
+package com.example.chess.app.service;
+
+import com.example.chess.app.config.IndexManager;
+import com.example.chess.app.config.IndexManager.IndexDefinition;
+import com.example.chess.app.dto.enums.Color;
+import com.example.chess.app.dto.enums.PieceType;
+import com.example.chess.app.dto.request.SimilarityRequest;
+import com.example.chess.app.model.Board;
+import com.example.chess.app.util.FenParser;
+import com.example.chess.app.util.MaterialSignature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the managed indexes build and that the planner actually uses them for
+ * the query shapes they were designed for. Needs Docker; skipped without it.
+ */
+@SpringBootTest(properties = {
+        "chess.ingest.kafka.enabled=false",
+        "chess.db.indexes.build-on-startup=false"})
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class SimilarityQueryPlanTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void r2dbcProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> String.format("r2dbc:postgresql://%s:%s@%s:%d/%s",
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName()));
+    }
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private IndexManager indexManager;
+
+    @Autowired
+    private PositionMatchingService matchingService;
+
+    @BeforeAll
+    void seedAndIndex() {
+        // 20k games and 200k positions with uniformly spread Elo ratings and king squares
+        databaseClient.sql("""
+                SELECT setseed(0.42);
+                INSERT INTO games (id, result, white_elo, black_elo, game_type)
+                SELECT 'game-' || i, '1-0', 500 + (i * 7919) % 2300, 500 + (i * 104729) % 2300, 'blitz'
+                FROM generate_series(1, 20000) AS i;
+                INSERT INTO positions (id, game_id, move_number, white_king, black_king,
+                                       white_pawns, black_pawns, white_knights, black_knights,
+                                       min_elo, max_elo, game_type)
+                SELECT gen_random_uuid(), g.id, i / 20000,
+                       (random() * 63)::int, (random() * 63)::int,
+                       (random() * 9.2e18)::bigint, (random() * 9.2e18)::bigint,
+                       (random() * 9.2e18)::bigint, (random() * 9.2e18)::bigint,
+                       LEAST(g.white_elo, g.black_elo), GREATEST(g.white_elo, g.black_elo), g.game_type
+                FROM generate_series(1, 200000) AS i
+                JOIN games g ON g.id = 'game-' || (1 + i % 20000);
+                ANALYZE games;
+                ANALYZE positions;
+                """)
+                .then()
+                .then(databaseClient.sql("UPDATE positions SET material_signature = " + MaterialSignature.SQL).then())
+                .then(databaseClient.sql("ANALYZE positions").then())
+                .block();
+
+        indexManager.ensureIndexes().block();
+    }
+
+    @Test
+    void allIndexesAreBuiltAndValid() {
+        Map<String, Boolean> status = indexManager.status().block();
+
+        assertThat(status).containsOnlyKeys(IndexManager.INDEXES.stream().map(IndexDefinition::name).toList());
+        assertThat(status).doesNotContainValue(false);
+    }
+
+    @Test
+    void positionsOfAGameUseTheGameIdIndex() {
+        String plan = explain("SELECT * FROM positions WHERE game_id = 'game-42'", UnaryOperator.identity());
+
+        assertThat(plan).contains("idx_positions_game_id");
+    }
+
+    @Test
+    void narrowEloRangeUsesTheEloIndex() {
+        String plan = explain("""
+                SELECT id FROM games
+                WHERE white_elo BETWEEN 2700 AND 2750 AND black_elo BETWEEN 2700 AND 2750
+                """, UnaryOperator.identity());
+
+        assertThat(plan).contains("idx_games_elo");
+    }
+
+    @Test
+    void kingSearchPrefiltersThroughTheKingIndex() {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(Color.WHITE);
+        request.setSelectedPieces(Set.of(PieceType.KING));
+        request.toDomain();
+
+        Board board = FenParser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        String sql = matchingService.similaritySql(matchingService.activePieces(board, request));
+
+        String plan = explain(sql, spec -> spec
+                .bind("signatures", new Integer[]{MaterialSignature.of(board)})
+                .bind("whiteKing", 4)
+                .bind("minElo", request.getMinElo())
+                .bind("maxElo", request.getMaxElo())
+                .bind("limit", request.getLimit()));
+
+        assertThat(plan).contains("idx_positions_white_king");
+    }
+
+    @Test
+    void narrowEloSearchRunsOnTheMaterialIndexWithoutJoiningGames() {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(Color.WHITE);
+        request.setSelectedPieces(Set.of(PieceType.PAWN));
+        request.setMinElo(2700);
+        request.setMaxElo(2750);
+        request.toDomain();
+
+        Board board = FenParser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        String sql = matchingService.similaritySql(matchingService.activePieces(board, request));
+
+        String plan = explain(sql, spec -> spec
+                .bind("signatures", new Integer[]{MaterialSignature.of(board)})
+                .bind("whitePawn", board.pieces(Board.WHITE_PAWN))
+                .bind("minElo", request.getMinElo())
+                .bind("maxElo", request.getMaxElo())
+                .bind("limit", request.getLimit()));
+
+        assertThat(plan).contains("idx_positions_material").doesNotContain("games");
+    }
+
+    @Test
+    void pawnSearchOnNearestStructuresUsesThePawnStructureIndex() {
+        SimilarityRequest request = new SimilarityRequest();
+        request.setColor(Color.WHITE);
+        request.setSelectedPieces(Set.of(PieceType.PAWN));
+        request.toDomain();
+
+        Board board = FenParser.parse("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        int pieces = matchingService.activePieces(board, request) | PositionMatchingService.PAWN_STRUCTURES;
+        String sql = matchingService.similaritySql(pieces);
+        assertThat(sql).contains("p.white_pawns = ANY(:whitePawnStructures)");
+
+        long pawns = board.pieces(Board.WHITE_PAWN);
+        String plan = explain(sql, spec -> spec
+                .bind("signatures", new Integer[]{MaterialSignature.of(board)})
+                .bind("whitePawnStructures", new Long[]{pawns, pawns ^ 1L << 12, pawns ^ 1L << 28})
+                .bind("whitePawn", pawns)
+                .bind("minElo", request.getMinElo())
+                .bind("maxElo", request.getMaxElo())
+                .bind("limit", request.getLimit()));
+
+        assertThat(plan).contains("idx_positions_white_pawn_structure");
+    }
+
+    private String explain(String sql, UnaryOperator<DatabaseClient.GenericExecuteSpec> binder) {
+        return binder.apply(databaseClient.sql("EXPLAIN " + sql))
+                .map(row -> row.get(0, String.class))
+                .all()
+                .collect(Collectors.joining("\n"))
+                .block();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.chess.app.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BitboardUtilsTest {
+
+    @Test
+    void listsSquaresInAscendingOrder() {
+        assertThat(BitboardUtils.toSquares(1L << 59 | 1L << 3)).containsExactly(3, 59);
+    }
+
+    @Test
+    void includesTheSignBit() {
+        assertThat(BitboardUtils.toSquares(Long.MIN_VALUE | 1L)).containsExactly(0, 63);
+    }
+
+    @Test
+    void emptyBitboardHasNoSquares() {
+        assertThat(BitboardUtils.toSquares(0L)).isEmpty();
+    }
+
+    @Test
+    void roundTripsWithFromSquares() {
+        List<Integer> squares = List.of(0, 7, 27, 36, 56, 63);
+
+        assertThat(BitboardUtils.toSquares(BitboardUtils.fromSquares(squares))).isEqualTo(squares);
+        // Rendered as the piece fields return them
+        assertThat(BitboardUtils.toSquares(BitboardUtils.fromSquares(List.of(3, 59))).toString()).isEqualTo("[3, 59]");
+    }
+}
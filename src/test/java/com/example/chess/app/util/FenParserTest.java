@@ -0,0 +1,95 @@
+package com.example.chess.app.util;
+
+import com.example.chess.app.model.Board;
+import com.example.chess.app.util.FenParseException.Error;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FenParserTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    void parsesTheStartingPosition() {
+        Board board = FenParser.parse(START);
+
+        assertThat(board.pieces(Board.WHITE_PAWN)).isEqualTo(0x000000000000FF00L);
+        assertThat(board.pieces(Board.BLACK_PAWN)).isEqualTo(0x00FF000000000000L);
+        assertThat(board.pieces(Board.WHITE_ROOK)).isEqualTo(1L | 1L << 7);
+        assertThat(board.pieces(Board.BLACK_QUEEN)).isEqualTo(1L << 59);
+        assertThat(board.pieces(Board.WHITE_KING)).isEqualTo(1L << 4);
+        assertThat(board.isWhiteToMove()).isTrue();
+        assertThat(board.getCastlingRights()).isEqualTo(15);
+        assertThat(board.getEnPassantSquare()).isEqualTo(Board.NO_SQUARE);
+        assertThat(board.getHalfMoveClock()).isZero();
+        assertThat(board.getFullMoveNumber()).isEqualTo(1);
+    }
+
+    @Test
+    void parsesSideToMoveAndEnPassant() {
+        Board board = FenParser.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+
+        assertThat(board.isWhiteToMove()).isFalse();
+        assertThat(board.getEnPassantSquare()).isEqualTo(20);
+        assertThat(board.pieces(Board.WHITE_PAWN)).isEqualTo(0x000000001000EF00L);
+    }
+
+    @Test
+    void parsesPartialCastlingAndClocks() {
+        Board board = FenParser.parse("r3k2r/8/8/8/8/8/8/R3K2R b Kq - 10 40");
+
+        assertThat(board.getCastlingRights()).isEqualTo(Board.WHITE_KINGSIDE | Board.BLACK_QUEENSIDE);
+        assertThat(board.getHalfMoveClock()).isEqualTo(10);
+        assertThat(board.getFullMoveNumber()).isEqualTo(40);
+    }
+
+    @Test
+    void ignoresSurroundingWhitespace() {
+        assertThat(FenParser.parse("  " + START + "  ").pieces(Board.WHITE_PAWN))
+                .isEqualTo(FenParser.parse(START).pieces(Board.WHITE_PAWN));
+    }
+
+    @Test
+    void clearsAReusedBoard() {
+        Board board = FenParser.parse("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        FenParser.parse("8/8/8/4k3/8/8/4K3/8 w - - 0 1", board);
+
+        assertThat(board.pieces(Board.WHITE_PAWN)).isZero();
+        assertThat(board.pieces(Board.WHITE_KING)).isEqualTo(1L << 12);
+        assertThat(board.isWhiteToMove()).isTrue();
+        assertThat(board.getCastlingRights()).isZero();
+        assertThat(board.getEnPassantSquare()).isEqualTo(Board.NO_SQUARE);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "''                                                                 | INVALID_RANK_COUNT   | 0",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -               | INVALID_FIELD_COUNT  | 52",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra     | INVALID_FIELD_COUNT  | 56",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1                    | INVALID_RANK_COUNT   | 34",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR/8 w KQkq - 0 1         | INVALID_RANK_COUNT   | 43",
+            "rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1          | INVALID_RANK_LENGTH  | 17",
+            "rnbqkbnr/pppppppp/44/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1          | INVALID_RANK_LENGTH  | 19",
+            "rnbqkbnr/ppppxppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1           | INVALID_PIECE        | 13",
+            "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1           | INVALID_PIECE        | 18",
+            "rnbqqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1           | INVALID_KING_COUNT   | 43",
+            "rnbqkbnP/pppppppp/8/8/8/8/PPPPPPP1/RNBQKBNR w KQkq - 0 1           | PAWN_ON_BACK_RANK    | 43",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1           | INVALID_SIDE_TO_MOVE | 44",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KKkq - 0 1           | INVALID_CASTLING     | 47",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e4 0 1          | INVALID_EN_PASSANT   | 51",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - x 1           | INVALID_CLOCK        | 53",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0           | INVALID_CLOCK        | 55",
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1234567     | INVALID_CLOCK        | 55"})
+    void rejectsInvalidFen(String fen, Error error, int index) {
+        assertThatThrownBy(() -> FenParser.parse(fen))
+                .isInstanceOfSatisfying(FenParseException.class, e -> {
+                    assertThat(e.getError()).isEqualTo(error);
+                    assertThat(e.getIndex()).isEqualTo(index);
+                    assertThat(e).hasMessageContaining(fen);
+                });
+    }
+}
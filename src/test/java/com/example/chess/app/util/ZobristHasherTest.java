@@ -0,0 +1,32 @@
+package com.example.chess.app.util;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hashes are persisted in positions.zobrist_hash, so any change to the keys or how
+ * they are combined silently breaks exact lookups of stored positions. These values
+ * must never be updated to make the test pass.
+ */
+class ZobristHasherTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1           | 7900DB21E51ED341",
+            "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1        | BD46C22BA0CE0705",
+            "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3   | 65FD485F95C5CD26",
+            "8/8/8/4k3/8/8/4K3/8 w - - 0 1                                      | 886575F75899C71F",
+            "r3k2r/8/8/8/8/8/8/R3K2R b Kq - 10 40                               | 1F622E228C9D5EA4"})
+    void hashesAreStable(String fen, String hash) {
+        assertThat(ZobristHasher.hash(FenParser.parse(fen))).isEqualTo(Long.parseUnsignedLong(hash, 16));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "r3k2r/8/8/8/8/8/8/R3K2R b Kq - 0 1 | r3k2r/8/8/8/8/8/8/R3K2R b Kq - 10 40"})
+    void moveCountersDoNotChangeTheHash(String fen, String transposition) {
+        assertThat(ZobristHasher.hash(FenParser.parse(fen))).isEqualTo(ZobristHasher.hash(FenParser.parse(transposition)));
+    }
+}